@@ -0,0 +1,93 @@
+package com.teletronics.notes.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a JMH json result with the baseline one. A benchmark regresses when its allocation per operation
+ * grows by more than the threshold, and the difference is larger than the error of both runs. Throughput
+ * depends on the machine, its load and the warmup, so a throughput drop over the threshold is only reported
+ * as a warning. Arguments are the baseline file, the result file and the threshold in percent.
+ */
+public class BenchmarkComparison {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private record Score(double value, double error) {
+        static Score of(JsonNode metric) {
+            double error = metric.path("scoreError").asDouble(0);
+            return new Score(metric.path("score").asDouble(), Double.isNaN(error) ? 0 : error);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File baselineFile = new File(args[0]);
+        if (!baselineFile.exists()) {
+            System.out.println("No benchmark baseline at " + baselineFile + ", nothing to compare");
+            return;
+        }
+        double threshold = Double.parseDouble(args[2]) / 100;
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = byName(objectMapper.readTree(baselineFile));
+        Map<String, JsonNode> result = byName(objectMapper.readTree(new File(args[1])));
+
+        List<String> regressions = new ArrayList<>();
+        List<String> slowdowns = new ArrayList<>();
+        System.out.printf("%-90s %15s %15s %8s %12s %12s %8s%n",
+                "Benchmark", "Baseline ops/s", "Current ops/s", "Change", "Baseline B/op", "Current B/op", "Change");
+        result.forEach((name, current) -> {
+            JsonNode previous = baseline.get(name);
+            if (previous == null) {
+                System.out.printf("%-90s %15s%n", name, "new");
+                return;
+            }
+            Score before = Score.of(previous.path("primaryMetric"));
+            Score after = Score.of(current.path("primaryMetric"));
+            Score allocatedBefore = Score.of(previous.path("secondaryMetrics").path(ALLOCATION));
+            Score allocatedAfter = Score.of(current.path("secondaryMetrics").path(ALLOCATION));
+            double change = change(before, after);
+            double allocationChange = change(allocatedBefore, allocatedAfter);
+            System.out.printf("%-90s %15.1f %15.1f %+7.1f%% %12.0f %12.0f %+7.1f%%%n", name,
+                    before.value(), after.value(), change * 100,
+                    allocatedBefore.value(), allocatedAfter.value(), allocationChange * 100);
+            if (-change > threshold && after.value() + after.error() < before.value() - before.error()) {
+                slowdowns.add(name + " throughput " + String.format("%+.1f%%", change * 100));
+            }
+            // allocation is deterministic enough that the error is usually zero, a few bytes are noise
+            if (allocationChange > threshold && allocatedAfter.value() - allocatedBefore.value() > 64
+                    && allocatedAfter.value() - allocatedAfter.error() > allocatedBefore.value() + allocatedBefore.error()) {
+                regressions.add(name + " allocation " + String.format("%+.1f%%", allocationChange * 100));
+            }
+        });
+        if (!slowdowns.isEmpty()) {
+            System.out.println("WARNING: throughput dropped against " + baselineFile + ":\n  "
+                    + String.join("\n  ", slowdowns));
+        }
+        if (!regressions.isEmpty()) {
+            throw new IllegalStateException("Benchmarks regressed against " + baselineFile + ":\n  "
+                    + String.join("\n  ", regressions));
+        }
+    }
+
+    private static double change(Score before, Score after) {
+        return before.value() == 0 ? 0 : (after.value() - before.value()) / before.value();
+    }
+
+    // benchmark method with its parameters, e.g. TextStatsBenchmark.findUniqueOccurrence(corpus=ASCII,size=HUGE)
+    private static Map<String, JsonNode> byName(JsonNode results) {
+        Map<String, JsonNode> byName = new LinkedHashMap<>();
+        for (JsonNode benchmark : results) {
+            String name = benchmark.path("benchmark").asText().replace("com.teletronics.notes.benchmarks.", "");
+            List<String> params = new ArrayList<>();
+            benchmark.path("params").fields().forEachRemaining(param -> params.add(param.getKey() + "=" + param.getValue().asText()));
+            byName.put(params.isEmpty() ? name : name + "(" + String.join(",", params) + ")", benchmark);
+        }
+        return byName;
+    }
+}
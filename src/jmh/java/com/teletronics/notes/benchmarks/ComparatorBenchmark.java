@@ -0,0 +1,62 @@
+package com.teletronics.notes.benchmarks;
+
+import com.teletronics.notes.comparators.DescendingOrderIgnoringCaseComparator;
+import com.teletronics.notes.utils.WordFrequencyCounter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordering the unique words of a text with {@link DescendingOrderIgnoringCaseComparator}, sorted once
+ * as the stats are built now and inserted one by one in a TreeMap as they used to be.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ComparatorBenchmark {
+
+    @Param
+    private TextStatsBenchmark.Size size;
+
+    @Param
+    private Corpus corpus;
+
+    private String[] words;
+
+    private final DescendingOrderIgnoringCaseComparator comparator = new DescendingOrderIgnoringCaseComparator();
+
+    @Setup
+    public void setUp() {
+        words = new WordFrequencyCounter()
+                .accept(corpus.generate(size.length))
+                .toSortedMap()
+                .keySet()
+                .toArray(String[]::new);
+        // sorted words are the best case for both, start from a fixed shuffle
+        Collections.shuffle(Arrays.asList(words), new Random(42));
+    }
+
+    @Benchmark
+    public String[] sort() {
+        String[] sorted = words.clone();
+        Arrays.sort(sorted, comparator);
+        return sorted;
+    }
+
+    @Benchmark
+    public Map<String, Integer> treeMap() {
+        Map<String, Integer> sorted = new TreeMap<>(comparator);
+        for (String word : words) {
+            sorted.put(word, 1);
+        }
+        return sorted;
+    }
+}
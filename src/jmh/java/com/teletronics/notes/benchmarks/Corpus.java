@@ -0,0 +1,70 @@
+package com.teletronics.notes.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generated note texts. The same seed is used on every run so results can be compared with the baseline.
+ */
+public enum Corpus {
+    /**
+     * English like words separated by spaces and some commas and dots.
+     */
+    ASCII {
+        @Override
+        void appendSeparator(StringBuilder text, Random random) {
+            int next = random.nextInt(20);
+            text.append(next == 0 ? ". " : next == 1 ? ", " : " ");
+        }
+    },
+    /**
+     * Accented, cyrillic, CJK and emoji runs between the words, none of them are word characters.
+     */
+    UNICODE {
+        private static final String[] RUNS = {" café ", " über ", " привет мир ", " 東京 ", " 😀 ", " naïve ", " Ωμέγα "};
+
+        @Override
+        void appendSeparator(StringBuilder text, Random random) {
+            text.append(random.nextInt(3) == 0 ? RUNS[random.nextInt(RUNS.length)] : " ");
+        }
+    },
+    /**
+     * Words glued by runs of punctuation and no spaces at all.
+     */
+    PUNCTUATION {
+        private static final String[] RUNS = {"--", "...", "!?", "\"", "'", "(", ")", ";", ":", "/", "#", "***"};
+
+        @Override
+        void appendSeparator(StringBuilder text, Random random) {
+            text.append(RUNS[random.nextInt(RUNS.length)]);
+        }
+    };
+
+    private static final int VOCABULARY_SIZE = 5000;
+
+    abstract void appendSeparator(StringBuilder text, Random random);
+
+    public String generate(int length) {
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random);
+        StringBuilder text = new StringBuilder(length + 32);
+        while (text.length() < length) {
+            String word = vocabulary[random.nextInt(vocabulary.length)];
+            text.append(random.nextInt(8) == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            appendSeparator(text, random);
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[2 + random.nextInt(9)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = random.nextInt(12) == 0 ? (char) ('0' + random.nextInt(10)) : (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,94 @@
+package com.teletronics.notes.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import com.teletronics.notes.repositories.NoteProjection;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link NoteMapper} for the create and update requests and the note responses, and the JSON of a listing
+ * page, whose projections are written without a DTO.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteMapperBenchmark {
+    private static final int LISTING_SIZE = 20;
+
+    private final NoteMapper noteMapper = new NoteMapper();
+
+    private NoteDto noteDto;
+
+    private Note note;
+
+    private ObjectMapper objectMapper;
+
+    private Page<NoteProjection> listing;
+
+    @Setup
+    public void setUp() {
+        String text = Corpus.ASCII.generate(1024);
+        noteDto = new NoteDto("672a1f3e5b770c62ea74c201", "Title", text, Set.of("BUSINESS", "IMPORTANT"),
+                null, null, 3L);
+        note = new Note();
+        note.setId(noteDto.getId());
+        note.setTitle(noteDto.getTitle());
+        note.setText(Corpus.PUNCTUATION.generate(1024));
+        note.setTags(Set.of(Tag.BUSINESS, Tag.IMPORTANT));
+        note.setCreatedDate(LocalDateTime.of(2024, 11, 5, 0, 19));
+        note.setVersion(3L);
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+        List<NoteProjection> projections = new ArrayList<>();
+        for (int i = 0; i < LISTING_SIZE; i++) {
+            Note row = new Note();
+            row.setId(String.format("672a1f3e5b770c62ea74c%03d", i));
+            row.setTitle("Title " + i);
+            row.setCreatedDate(note.getCreatedDate().minusMinutes(i));
+            projections.add(projectionFactory.createProjection(NoteProjection.class, row));
+        }
+        listing = new PageImpl<>(projections, PageRequest.of(0, LISTING_SIZE), 1000);
+    }
+
+    @Benchmark
+    public Note mapToNewNote() {
+        return noteMapper.mapToNote(null, noteDto);
+    }
+
+    @Benchmark
+    public Note mapToStoredNote() {
+        Note stored = new Note();
+        stored.setText(note.getText());
+        stored.setStats(note.getStats());
+        return noteMapper.mapToNote(stored, noteDto);
+    }
+
+    @Benchmark
+    public NoteDto mapFromNote() {
+        return noteMapper.mapFromNote(note);
+    }
+
+    @Benchmark
+    public void writeListing() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), listing);
+    }
+}
@@ -0,0 +1,48 @@
+package com.teletronics.notes.benchmarks;
+
+import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.validators.NotEmptyIfString;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of a {@link NoteDto}, as done for every line of a bulk request, and the
+ * {@link NotEmptyIfString} check alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoteValidationBenchmark {
+
+    private Validator validator;
+
+    private NotEmptyIfString.NotEmptyIfStringValidator notEmptyIfStringValidator;
+
+    private NoteDto noteDto;
+
+    @Setup
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        notEmptyIfStringValidator = new NotEmptyIfString.NotEmptyIfStringValidator();
+        notEmptyIfStringValidator.initialize(NoteDto.class.getAnnotationsByType(NotEmptyIfString.class)[0]);
+        noteDto = new NoteDto(null, "Title", Corpus.ASCII.generate(1024), Set.of("BUSINESS"), null, null, null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<NoteDto>> validate() {
+        return validator.validate(noteDto);
+    }
+
+    @Benchmark
+    public boolean notEmptyIfString() {
+        return notEmptyIfStringValidator.isValid(noteDto, null);
+    }
+}
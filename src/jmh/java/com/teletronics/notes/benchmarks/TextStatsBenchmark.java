@@ -0,0 +1,72 @@
+package com.teletronics.notes.benchmarks;
+
+import com.teletronics.notes.services.NoteService;
+import com.teletronics.notes.utils.StringProcessingUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Word statistics of a note text, through {@link NoteService} and the regex helpers of
+ * {@link StringProcessingUtils}. HUGE is over the default parallel threshold, so it measures the
+ * fork join path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextStatsBenchmark {
+
+    public enum Size {
+        SMALL(256),
+        MEDIUM(64 * 1024),
+        HUGE(8 * 1024 * 1024);
+
+        final int length;
+
+        Size(int length) {
+            this.length = length;
+        }
+    }
+
+    @Param
+    private Size size;
+
+    @Param
+    private Corpus corpus;
+
+    private String text;
+
+    private NoteService noteService;
+
+    @Setup
+    public void setUp() {
+        text = corpus.generate(size.length);
+        noteService = new NoteService();
+        // same defaults as application.yml
+        ReflectionTestUtils.setField(noteService, "maxUniqueTerms", 1000000);
+        ReflectionTestUtils.setField(noteService, "parallelThreshold", 4194304);
+        ReflectionTestUtils.setField(noteService, "parallelSegmentSize", 1048576);
+    }
+
+    @Benchmark
+    public Map<String, Integer> findUniqueOccurrence() {
+        return noteService.findUniqueOccurrence(text);
+    }
+
+    @Benchmark
+    public Map<String, Integer> findUniqueOccurrenceStream() throws IOException {
+        return noteService.findUniqueOccurrence(new StringReader(text));
+    }
+
+    @Benchmark
+    public String[] replaceAndSplit() {
+        return StringProcessingUtils.splitWithRegex(StringProcessingUtils.replaceAllAlphaNumerics(text), " ");
+    }
+}
@@ -0,0 +1,257 @@
+package com.teletronics.notes.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.teletronics.notes.NotesAppApplication;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.services.NoteService;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.bson.Document;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts the application on an in process MongoDB stand in, seeds it with synthetic notes and sends a
+ * mix of requests at a fixed arrival rate. Latency is measured from the time a request was scheduled,
+ * not from when it was sent, so a slow server is not hidden by requests that queue up behind it.
+ * Nothing leaves the machine. Settings are system properties, see the README.
+ */
+public class LoadTest {
+    private static final String DEFAULT_MIX = "page=25,tags=20,cursor=10,text=15,stats=15,stats-text=5,create=7,update=3";
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    // errors include the dropped requests, which were never sent and have no latency
+    private record Result(long count, long errors, long dropped, double throughput, double p50, double p99, double p999, double max) {
+    }
+
+    private static class OperationStats {
+        final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+        final LongAdder errors = new LongAdder();
+        // not sent, max-in-flight requests were already waiting for a response
+        final LongAdder dropped = new LongAdder();
+        volatile String lastError;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int noteCount = Integer.getInteger("loadtest.notes", 2000);
+        int rate = Integer.getInteger("loadtest.rate", 10);
+        Duration warmup = DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "10s"));
+        Duration duration = DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "60s"));
+        int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 1000);
+        long seed = Long.getLong("loadtest.seed", 42);
+        Map<Operation, Integer> mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+        File resultFile = new File(System.getProperty("loadtest.result", "target/loadtest-result.json"));
+        String mongodbUri = System.getProperty("loadtest.mongodb-uri", "");
+
+        // the stand in keeps everything in memory, has no indexes and scans the collection on every query,
+        // a local mongod can be given instead to measure with the real query planner
+        MongoServer mongo = null;
+        List<String> arguments = new ArrayList<>(List.of("--server.port=0",
+                "--notes.search.build-on-startup=false",
+                "--logging.level.root=WARN"));
+        if (mongodbUri.isEmpty()) {
+            mongo = new MongoServer(new MemoryBackend());
+            InetSocketAddress address = mongo.bind();
+            mongodbUri = "mongodb://" + address.getHostString() + ":" + address.getPort() + "/notes-loadtest";
+            arguments.add("--notes.indexes.ensure-on-startup=false");
+        }
+        arguments.add("--spring.data.mongodb.uri=" + mongodbUri);
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        arguments.addAll(Arrays.asList(args));
+        ConfigurableApplicationContext context = null;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            context = new SpringApplicationBuilder(NotesAppApplication.class).run(arguments.toArray(String[]::new));
+            NoteCorpus corpus = new NoteCorpus(seed);
+            Note[] notes = seed(context, corpus, noteCount);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            Operation.Target target = new Operation.Target(URI.create("http://localhost:" + port), notes, corpus);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(executor)
+                    .build();
+
+            System.out.printf("Seeded %d notes, sending %d requests/s for %s after %s of warmup%n", noteCount, rate, duration, warmup);
+            Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+            mix.keySet().forEach(operation -> stats.put(operation, new OperationStats()));
+            run(client, target, mix, stats, new Random(seed), rate, warmup, duration, maxInFlight);
+
+            Map<String, Result> results = report(stats, duration);
+            if (results.get("all").dropped() > 0) {
+                System.out.printf("%d requests were not sent and are counted as errors, %d were already in flight%n",
+                        results.get("all").dropped(), maxInFlight);
+            }
+            stats.forEach((operation, operationStats) -> {
+                if (operationStats.lastError != null) {
+                    System.out.printf("Last %s error: %s%n", operation.key(), operationStats.lastError);
+                }
+            });
+            resultFile.getAbsoluteFile().getParentFile().mkdirs();
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, results);
+            System.out.println("Result is saved to " + resultFile);
+        } finally {
+            executor.shutdownNow();
+            if (context != null) {
+                context.close();
+            }
+            if (mongo != null) {
+                mongo.shutdownNow();
+            }
+        }
+    }
+
+    // written straight to the collection, so no event or auditing runs and the created dates are kept,
+    // notes of a previous run are removed first
+    private static Note[] seed(ConfigurableApplicationContext context, NoteCorpus corpus, int noteCount) {
+        MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+        NoteService noteService = context.getBean(NoteService.class);
+        Note[] notes = new Note[noteCount];
+        List<Document> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        mongoTemplate.remove(new Query(), Note.class);
+        for (int i = 0; i < noteCount; i++) {
+            Note note = corpus.nextNote();
+            note.setStats(noteService.findUniqueOccurrence(note.getText()));
+            Document document = new Document();
+            mongoTemplate.getConverter().write(note, document);
+            batch.add(document);
+            // keep the fields the requests need, not the texts
+            Note seeded = new Note();
+            seeded.setId(note.getId());
+            seeded.setCreatedDate(note.getCreatedDate());
+            notes[i] = seeded;
+            if (batch.size() == SEED_BATCH_SIZE || i == noteCount - 1) {
+                mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class)).insertMany(batch);
+                batch.clear();
+            }
+        }
+        return notes;
+    }
+
+    private static void run(HttpClient client, Operation.Target target, Map<Operation, Integer> mix,
+                            Map<Operation, OperationStats> stats, Random random, int rate,
+                            Duration warmup, Duration duration, int maxInFlight) throws InterruptedException {
+        Operation[] operations = mix.keySet().toArray(Operation[]::new);
+        int[] cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulative[i] = total;
+        }
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int pick = random.nextInt(total);
+            int index = 0;
+            while (cumulative[index] <= pick) {
+                index++;
+            }
+            Operation operation = operations[index];
+            HttpRequest request = operation.request(target, random).timeout(Duration.ofMinutes(1)).build();
+            OperationStats operationStats = stats.get(operation);
+            if (!inFlight.tryAcquire()) {
+                if (intended >= measureStart) {
+                    operationStats.dropped.increment();
+                }
+                continue;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long latency = System.nanoTime() - intended;
+                inFlight.release();
+                if (intended < measureStart) {
+                    return;
+                }
+                if (error != null || response.statusCode() >= 400) {
+                    operationStats.errors.increment();
+                    operationStats.lastError = error != null ? error.toString() : "status " + response.statusCode();
+                    return;
+                }
+                operationStats.latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latency),
+                        operationStats.latencies.getHighestTrackableValue()));
+            });
+        }
+        if (!inFlight.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+            System.out.println("Some requests did not complete within a minute after the end of the run");
+        }
+    }
+
+    private static Map<String, Result> report(Map<Operation, OperationStats> stats, Duration duration) {
+        Map<String, Result> results = new LinkedHashMap<>();
+        Histogram all = new Histogram(TimeUnit.MINUTES.toMicros(10), 3);
+        long allErrors = 0;
+        long allDropped = 0;
+        System.out.printf("%-12s %10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Errors", "Dropped", "Req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            Histogram latencies = entry.getValue().latencies;
+            long dropped = entry.getValue().dropped.sum();
+            long errors = entry.getValue().errors.sum() + dropped;
+            all.add(latencies);
+            allErrors += errors;
+            allDropped += dropped;
+            results.put(entry.getKey().key(), print(entry.getKey().key(), latencies, errors, dropped, duration));
+        }
+        results.put("all", print("all", all, allErrors, allDropped, duration));
+        return results;
+    }
+
+    private static Result print(String name, Histogram latencies, long errors, long dropped, Duration duration) {
+        Result result = new Result(latencies.getTotalCount(),
+                errors,
+                dropped,
+                latencies.getTotalCount() / (duration.toMillis() / 1000.0),
+                latencies.getValueAtPercentile(50) / 1000.0,
+                latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getValueAtPercentile(99.9) / 1000.0,
+                latencies.getMaxValue() / 1000.0);
+        System.out.printf("%-12s %10d %8d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, result.count(), result.errors(),
+                result.dropped(), result.throughput(), result.p50(), result.p99(), result.p999(), result.max());
+        return result;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            if (Integer.parseInt(weight[1]) > 0) {
+                weights.put(Operation.of(weight[0]), Integer.parseInt(weight[1]));
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix should have at least one operation");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,94 @@
+package com.teletronics.notes.loadtest;
+
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic notes. Words follow a Zipf distribution over a fixed vocabulary, text lengths a log normal
+ * one (most notes are short, a few are very long) and every tag is set independently with its own
+ * probability. Created dates are spread over the last year. The same seed gives the same texts, tags
+ * and dates, only the ids differ.
+ */
+public class NoteCorpus {
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final double TEXT_LENGTH_MEDIAN = 800;
+    private static final double TEXT_LENGTH_SIGMA = 1.2;
+    private static final int TEXT_LENGTH_MAX = 256 * 1024;
+    private static final double[] TAG_PROBABILITIES = {0.35, 0.45, 0.10}; // BUSINESS, PERSONAL, IMPORTANT
+
+    private final Random random;
+    private final String[] vocabulary;
+    // cumulative Zipf weights of the vocabulary ranks
+    private final double[] cumulative;
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    public NoteCorpus(long seed) {
+        random = new Random(seed);
+        vocabulary = new String[VOCABULARY_SIZE];
+        cumulative = new double[VOCABULARY_SIZE];
+        double total = 0;
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            vocabulary[rank] = word(2 + (int) Math.min(10, Math.abs(random.nextGaussian() * 3)));
+            total += 1.0 / (rank + 1);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            cumulative[rank] /= total;
+        }
+    }
+
+    public Note nextNote() {
+        Note note = new Note();
+        note.setId(new ObjectId().toHexString());
+        note.setTitle(text(10 + random.nextInt(50)));
+        note.setText(nextText());
+        note.setTags(nextTags());
+        note.setCreatedDate(now.minus(random.nextLong(365L * 24 * 3600 * 1000), ChronoUnit.MILLIS));
+        note.setLastModifiedDate(note.getCreatedDate());
+        note.setVersion(0L);
+        return note;
+    }
+
+    public String nextText() {
+        double length = TEXT_LENGTH_MEDIAN * Math.exp(TEXT_LENGTH_SIGMA * random.nextGaussian());
+        return text((int) Math.max(1, Math.min(TEXT_LENGTH_MAX, length)));
+    }
+
+    public Set<Tag> nextTags() {
+        Set<Tag> tags = EnumSet.noneOf(Tag.class);
+        for (Tag tag : Tag.values()) {
+            if (random.nextDouble() < TAG_PROBABILITIES[tag.ordinal()]) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    private String text(int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            text.append(vocabulary[rank < 0 ? Math.min(-rank - 1, VOCABULARY_SIZE - 1) : rank]);
+            int separator = random.nextInt(16);
+            text.append(separator == 0 ? ". " : separator == 1 ? ", " : " ");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    private String word(int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,149 @@
+package com.teletronics.notes.loadtest;
+
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import com.teletronics.notes.utils.NoteCursor;
+import org.bson.types.ObjectId;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Requests of the load test workload, each one is reported on its own.
+ */
+public enum Operation {
+    /**
+     * GET /api/notes, mostly the first pages and sometimes a deep one.
+     */
+    PAGE("page") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            return HttpRequest.newBuilder(target.uri("?pageSize=10&pageNumber=" + pageNumber(target, random, 10)));
+        }
+    },
+    /**
+     * GET /api/notes filtered by one or two tags.
+     */
+    TAGS("tags") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            Tag[] tags = Tag.values();
+            String query = "?pageSize=10&pageNumber=" + pageNumber(target, random, 10) + "&tags=" + tags[random.nextInt(tags.length)];
+            if (random.nextInt(4) == 0) {
+                query += "&tags=" + tags[random.nextInt(tags.length)];
+            }
+            return HttpRequest.newBuilder(target.uri(query));
+        }
+    },
+    /**
+     * GET /api/notes with a cursor, after a random note.
+     */
+    CURSOR("cursor") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            Note after = target.notes()[random.nextInt(target.notes().length)];
+            String cursor = new NoteCursor(after.getCreatedDate(), new ObjectId(after.getId())).encode();
+            return HttpRequest.newBuilder(target.uri("?pageSize=10&after=" + cursor));
+        }
+    },
+    /**
+     * GET /api/notes/{id}/text
+     */
+    TEXT("text") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            return HttpRequest.newBuilder(target.uri("/" + target.randomId(random) + "/text"));
+        }
+    },
+    /**
+     * GET /api/notes/{id}/stats
+     */
+    STATS("stats") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            return HttpRequest.newBuilder(target.uri("/" + target.randomId(random) + "/stats"));
+        }
+    },
+    /**
+     * POST /api/notes/stats with a text of the corpus.
+     */
+    STATS_TEXT("stats-text") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            return HttpRequest.newBuilder(target.uri("/stats"))
+                    .header("Content-Type", "text/plain")
+                    .POST(HttpRequest.BodyPublishers.ofString(target.corpus().nextText()));
+        }
+    },
+    /**
+     * POST /api/notes
+     */
+    CREATE("create") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            return HttpRequest.newBuilder(target.uri(""))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body(target)));
+        }
+    },
+    /**
+     * PUT /api/notes/{id} without a version, so it never conflicts.
+     */
+    UPDATE("update") {
+        @Override
+        HttpRequest.Builder request(Target target, Random random) {
+            return HttpRequest.newBuilder(target.uri("/" + target.randomId(random)))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(body(target)));
+        }
+    };
+
+    /**
+     * Where the requests go and the seeded notes they can refer to.
+     */
+    public record Target(URI base, Note[] notes, NoteCorpus corpus) {
+        URI uri(String path) {
+            return base.resolve("/api/notes" + path);
+        }
+
+        String randomId(Random random) {
+            return notes[random.nextInt(notes.length)].getId();
+        }
+    }
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    abstract HttpRequest.Builder request(Target target, Random random);
+
+    public static Operation of(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + key);
+    }
+
+    private static int pageNumber(Target target, Random random, int pageSize) {
+        int pages = Math.max(1, target.notes().length / pageSize);
+        return random.nextInt(10) == 0 ? random.nextInt(pages) : random.nextInt(Math.min(5, pages));
+    }
+
+    private static String body(Target target) {
+        Set<String> tags = target.corpus().nextTags().stream().map(Enum::name).collect(Collectors.toSet());
+        String tagsJson = tags.stream().map(tag -> "\"" + tag + "\"").collect(Collectors.joining(","));
+        // corpus texts are lower case letters, spaces, dots and commas, nothing to escape
+        return "{\"title\":\"load test\",\"text\":\"" + target.corpus().nextText() + "\",\"tags\":[" + tagsJson + "]}";
+    }
+}
@@ -0,0 +1,89 @@
+package com.teletronics.notes.configs;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.teletronics.notes.events.NoteChangesLostEvent;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.repositories.NoteTextProjection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String NOTE_TEXT_CACHE = "noteText";
+
+    @Autowired
+    @Lazy
+    private CacheManager cacheManager;
+
+    // maximum number of text characters kept in the cache
+    @Value("${notes.cache.text.max-weight:67108864}")
+    private long textCacheMaxWeight;
+
+    // without the change stream the writes of other instances are only seen once a text expires
+    @Value("${notes.cache.text.expire-after-write:30s}")
+    private Duration textCacheExpireAfterWrite;
+
+    @Value("${notes.changes.enabled:false}")
+    private boolean changesEnabled;
+
+    /**
+     * Note texts weighted by their stored length, Caffeine evicts with W-TinyLFU once the total goes over the
+     * maximum. Unless the change stream is followed, texts also expire so an update made through another
+     * instance is served at most expire-after-write late. The cache is declared up front so its statistics
+     * are bound to the actuator metrics.
+     */
+    @Bean
+    public CacheManager cacheManager() {
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder()
+                .maximumWeight(textCacheMaxWeight)
+                .weigher((Object id, Object note) -> note instanceof NoteTextProjection text
+                        ? Math.max(1, text.weight())
+                        : 1)
+                .recordStats();
+        if(!changesEnabled && !textCacheExpireAfterWrite.isZero()) {
+            caffeine.expireAfterWrite(textCacheExpireAfterWrite);
+        }
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(caffeine);
+        cacheManager.setCacheNames(List.of(NOTE_TEXT_CACHE));
+        return cacheManager;
+    }
+
+    @EventListener
+    public void onNoteSaved(NoteSavedEvent event) {
+        evictText(event.note().getId());
+    }
+
+    @EventListener
+    public void onNoteDeleted(NoteDeletedEvent event) {
+        evictText(event.id());
+    }
+
+    @EventListener
+    public void onNoteChangesLost(NoteChangesLostEvent event) {
+        Cache cache = cacheManager.getCache(NOTE_TEXT_CACHE);
+        if(cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void evictText(String id) {
+        Cache cache = cacheManager.getCache(NOTE_TEXT_CACHE);
+        if(cache != null) {
+            cache.evict(id);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.teletronics.notes.configs;
+
+import io.micrometer.core.instrument.Tags;
+import org.bson.Document;
+import org.springframework.boot.actuate.metrics.data.DefaultRepositoryTagsProvider;
+import org.springframework.boot.actuate.metrics.data.RepositoryTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener.RepositoryMethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repository calls are timed by Spring Boot as spring.data.repository.invocations, the tags provider adds
+ * the kind of query so projected listings, tag filtered listings and whole note reads can be told apart.
+ */
+@Configuration
+public class MetricsConfig {
+    static final String TAG_FILTERED = "tag-filtered";
+    static final String PROJECTED = "projected";
+    static final String ENTITY = "entity";
+
+    @Bean
+    public RepositoryTagsProvider repositoryTagsProvider() {
+        Map<Method, String> queryTypes = new ConcurrentHashMap<>();
+        DefaultRepositoryTagsProvider defaultTags = new DefaultRepositoryTagsProvider();
+        return (RepositoryMethodInvocation invocation) -> Tags.of(defaultTags.repositoryTags(invocation))
+                .and("query", queryTypes.computeIfAbsent(invocation.getMethod(), MetricsConfig::queryType));
+    }
+
+    static String queryType(Method method) {
+        if(method.getName().contains("ByTags")) {
+            return TAG_FILTERED;
+        }
+        // element type of Page, Slice, List, Optional, Flux...
+        ResolvableType type = ResolvableType.forMethodReturnType(method);
+        while (type.hasGenerics()) {
+            type = type.getGeneric(0);
+        }
+        Class<?> resolved = type.resolve();
+        // raw documents are only read with a fields projection
+        return resolved != null && (resolved == Document.class || resolved.isInterface() && resolved.getSimpleName().endsWith("Projection"))
+                ? PROJECTED
+                : ENTITY;
+    }
+}
@@ -0,0 +1,42 @@
+package com.teletronics.notes.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the MongoDB clients. They are needed to create the template, so they are kept apart from
+ * {@link MongoConfig}, which uses it.
+ */
+@Configuration
+public class MongoClientConfig {
+    @Value("${notes.mongo.pool.max-size:100}")
+    private int poolMaxSize;
+
+    @Value("${notes.mongo.pool.min-size:0}")
+    private int poolMinSize;
+
+    @Value("${notes.mongo.pool.max-connecting:2}")
+    private int poolMaxConnecting;
+
+    @Value("${notes.mongo.pool.max-wait:2m}")
+    private Duration poolMaxWait;
+
+    /**
+     * Connection pool of the driver. Requests wait for a free connection for at most max-wait, so once
+     * request threads are no longer the limit (virtual threads) the pool bounds the load sent to the
+     * database and an overload fails fast instead of queuing without end.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer() {
+        return settings -> settings.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(poolMaxSize)
+                .minSize(poolMinSize)
+                .maxConnecting(poolMaxConnecting)
+                .maxWaitTime(poolMaxWait.toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
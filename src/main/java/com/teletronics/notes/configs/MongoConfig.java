@@ -1,9 +1,110 @@
 package com.teletronics.notes.configs;
 
+import com.mongodb.client.MongoCollection;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.Ordered;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Sorts.descending;
 
 @Configuration
 @EnableMongoAuditing
+@Slf4j
 public class MongoConfig {
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${notes.indexes.ensure-on-startup:true}")
+    private boolean ensureIndexesOnStartup;
+
+    // off, warn or fail
+    @Value("${notes.indexes.plan-check:warn}")
+    private String planCheck;
+
+    /**
+     * Creates the indexes declared on {@link Note} and checks that the listing queries use them. Runs
+     * before the other startup work so the search index build does not start on a missing index.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void ensureIndexes() {
+        if(!ensureIndexesOnStartup) {
+            return;
+        }
+        IndexOperations indexOps = mongoTemplate.indexOps(Note.class);
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        resolver.resolveIndexFor(Note.class).forEach(indexOps::ensureIndex);
+
+        if("off".equalsIgnoreCase(planCheck)) {
+            return;
+        }
+        List<String> collectionScans = findCollectionScans(mongoTemplate.getCollection(mongoTemplate.getCollectionName(Note.class)));
+        if(collectionScans.isEmpty()) {
+            return;
+        }
+        String message = "Listing queries fall back to a collection scan: " + String.join(", ", collectionScans);
+        if("fail".equalsIgnoreCase(planCheck)) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+
+    private List<String> findCollectionScans(MongoCollection<Document> collection) {
+        Bson sort = descending("createdDate", "_id");
+        Bson tags = in("tags", Tag.BUSINESS.name(), Tag.PERSONAL.name());
+        Date createdDate = new Date();
+        Bson after = or(lt("createdDate", createdDate),
+                and(eq("createdDate", createdDate), lt("_id", new ObjectId())),
+                and(eq("createdDate", createdDate), type("_id", BsonType.STRING)),
+                eq("createdDate", null));
+        Map<String, Bson> queries = Map.of(
+                "all notes", new Document(),
+                "notes by tags", tags,
+                "notes after cursor", after,
+                "notes by tags after cursor", and(tags, after));
+
+        List<String> collectionScans = new ArrayList<>();
+        queries.forEach((name, filter) -> {
+            Document explain = collection.find(filter).sort(sort).limit(20).explain();
+            if(hasCollectionScan(explain.get("queryPlanner", Document.class).get("winningPlan"))) {
+                collectionScans.add(name);
+            }
+        });
+        return collectionScans;
+    }
+
+    static boolean hasCollectionScan(Object plan) {
+        if(plan instanceof Document stage) {
+            if("COLLSCAN".equals(stage.getString("stage"))) {
+                return true;
+            }
+            return stage.values().stream().anyMatch(MongoConfig::hasCollectionScan);
+        }
+        if(plan instanceof List<?> stages) {
+            return stages.stream().anyMatch(MongoConfig::hasCollectionScan);
+        }
+        return false;
+    }
 }
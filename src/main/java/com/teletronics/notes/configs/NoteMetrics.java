@@ -0,0 +1,74 @@
+package com.teletronics.notes.configs;
+
+import com.teletronics.notes.events.NoteSavedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizes of the note texts and of the stats they give, and the errors the services turn into a generic
+ * message. Saved notes are measured from {@link NoteSavedEvent}, the stats endpoint calls
+ * {@link #recordStatsRequest} itself.
+ */
+@Component
+public class NoteMetrics {
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary noteTextSize;
+    private final DistributionSummary noteUniqueWords;
+    private final DistributionSummary statsInputSize;
+    private final DistributionSummary statsUniqueWords;
+
+    public NoteMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        noteTextSize = textSize("note", meterRegistry);
+        noteUniqueWords = uniqueWords("note", meterRegistry);
+        statsInputSize = textSize("stats-request", meterRegistry);
+        statsUniqueWords = uniqueWords("stats-request", meterRegistry);
+    }
+
+    @EventListener
+    public void onNoteSaved(NoteSavedEvent event) {
+        if(event.remote()) {
+            // measured by the instance that saved it
+            return;
+        }
+        if(event.note().getText() != null) {
+            noteTextSize.record(event.note().getText().length());
+        }
+        if(event.note().getStats() != null) {
+            noteUniqueWords.record(event.note().getStats().size());
+        }
+    }
+
+    public void recordStatsRequest(long inputSize, int uniqueWords) {
+        statsInputSize.record(inputSize);
+        statsUniqueWords.record(uniqueWords);
+    }
+
+    public void recordError(String operation, Exception e) {
+        Counter.builder("notes.service.errors")
+                .description("Exceptions rethrown by the services with a generic message")
+                .tag("operation", operation)
+                .tag("exception", e.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static DistributionSummary textSize(String source, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("notes.text.size")
+                .description("Length of the note texts in characters")
+                .baseUnit("characters")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary uniqueWords(String source, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("notes.stats.unique.words")
+                .description("Number of unique words in the stats of a text")
+                .baseUnit("words")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
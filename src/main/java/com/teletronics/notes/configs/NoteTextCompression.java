@@ -0,0 +1,76 @@
+package com.teletronics.notes.configs;
+
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.utils.TextCompression;
+import org.bson.BsonBinarySubType;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.convert.MongoConversionContext;
+import org.springframework.data.mongodb.core.convert.MongoValueConverter;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveCallback;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the texts of at least min-length characters LZ4 compressed, as a binary of a user defined subtype
+ * with the codec named in the textCodec field. Saved notes are compressed by the save callback, updates
+ * through {@link #setText}. Compressed texts are read back whether compression is enabled or not.
+ */
+@Component
+public class NoteTextCompression implements BeforeSaveCallback<Note> {
+    public static final String CODEC_FIELD = "textCodec";
+    public static final byte BINARY_SUBTYPE = BsonBinarySubType.USER_DEFINED.getValue();
+
+    @Value("${notes.text.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${notes.text.compression.min-length:1024}")
+    private int minLength;
+
+    @Override
+    public Note onBeforeSave(Note note, Document document, String collection) {
+        Binary compressed = compress(note.getText());
+        if(compressed != null) {
+            document.put("text", compressed);
+            document.put(CODEC_FIELD, TextCompression.CODEC);
+        }
+        return note;
+    }
+
+    /**
+     * Sets the text, compressed or not, and its codec on an update.
+     */
+    public Update setText(Update update, String text) {
+        Binary compressed = compress(text);
+        return compressed == null
+                ? update.set("text", text).unset(CODEC_FIELD)
+                : update.set("text", compressed).set(CODEC_FIELD, TextCompression.CODEC);
+    }
+
+    private Binary compress(String text) {
+        if(!enabled || text == null || text.length() < minLength) {
+            return null;
+        }
+        byte[] compressed = TextCompression.compress(text);
+        return compressed == null ? null : new Binary(BINARY_SUBTYPE, compressed);
+    }
+
+    /**
+     * Reads the text property of {@link Note}, which is only stored as a binary when compressed, whatever
+     * subtype the server returns. Written values are left as they are, {@link #onBeforeSave} and
+     * {@link #setText} compress them.
+     */
+    public static class TextConverter implements MongoValueConverter<Object, Object> {
+
+        @Override
+        public Object read(Object value, MongoConversionContext context) {
+            return value instanceof Binary binary ? TextCompression.decompressToString(binary.getData()) : value;
+        }
+
+        @Override
+        public Object write(Object value, MongoConversionContext context) {
+            return value;
+        }
+    }
+}
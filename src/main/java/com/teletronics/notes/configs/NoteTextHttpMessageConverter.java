@@ -0,0 +1,42 @@
+package com.teletronics.notes.configs;
+
+import com.teletronics.notes.repositories.NoteTextProjection;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a note text as UTF-8 on the request thread. A compressed text is decompressed straight to the
+ * response a block at a time, so it is neither held whole in memory nor handed to an async thread.
+ */
+public class NoteTextHttpMessageConverter extends AbstractHttpMessageConverter<NoteTextProjection> {
+
+    public NoteTextHttpMessageConverter() {
+        super(StandardCharsets.UTF_8, MediaType.TEXT_PLAIN);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return NoteTextProjection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected NoteTextProjection readInternal(Class<? extends NoteTextProjection> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Note texts are only written", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(NoteTextProjection note, HttpOutputMessage outputMessage) throws IOException {
+        note.writeTo(outputMessage.getBody());
+    }
+}
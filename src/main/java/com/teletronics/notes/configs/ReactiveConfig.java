@@ -0,0 +1,30 @@
+package com.teletronics.notes.configs;
+
+import com.teletronics.notes.models.Note;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeSaveCallback;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive stack, enabled with the reactive profile. Tomcat is on the classpath for the servlet stack and
+ * would be picked by default, the Netty factory makes requests run on the Reactor Netty event loop.
+ */
+@Configuration
+@Profile("reactive")
+@EnableReactiveMongoAuditing
+public class ReactiveConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ReactiveBeforeSaveCallback<Note> textCompressionCallback(NoteTextCompression noteTextCompression) {
+        return (note, document, collection) -> Mono.just(noteTextCompression.onBeforeSave(note, document, collection));
+    }
+}
@@ -0,0 +1,105 @@
+package com.teletronics.notes.configs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Listens to the JFR events emitted when a virtual thread blocks while pinned to its carrier, for
+ * example inside a synchronized block, and publishes them at /actuator/pinnedthreads and as the
+ * notes.virtual-threads.pinned timer. Pinned threads hold a carrier, enough of them and requests stall.
+ */
+@Endpoint(id = "pinnedthreads")
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_STACKS = 50;
+    private static final int STACK_DEPTH = 8;
+
+    private final Duration threshold;
+    private final Timer pinned;
+    private final Counter droppedStacks;
+    // count of pinned events per top frames of the stack
+    private final Map<String, LongAdder> stacks = new ConcurrentHashMap<>();
+    private RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(Duration threshold, MeterRegistry meterRegistry) {
+        this.threshold = threshold;
+        this.pinned = Timer.builder("notes.virtual-threads.pinned")
+                .description("Time virtual threads were blocked while pinned to their carrier")
+                .register(meterRegistry);
+        this.droppedStacks = Counter.builder("notes.virtual-threads.pinned.dropped-stacks")
+                .register(meterRegistry);
+    }
+
+    @ReadOperation
+    public Map<String, Object> pinnedThreads() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", pinned.count());
+        result.put("totalTimeMs", pinned.totalTime(TimeUnit.MILLISECONDS));
+        result.put("maxTimeMs", pinned.max(TimeUnit.MILLISECONDS));
+        result.put("thresholdMs", threshold.toMillis());
+        result.put("stacks", stacks.entrySet()
+                .stream()
+                .sorted(Map.Entry.<String, LongAdder>comparingByValue(Comparator.comparingLong(LongAdder::sum)).reversed())
+                .map(entry -> Map.of("count", entry.getValue().sum(), "stack", entry.getKey()))
+                .collect(Collectors.toList()));
+        return result;
+    }
+
+    @Override
+    public void start() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::record);
+        recording.startAsync();
+        log.info("Monitoring virtual threads pinned for more than {} ms", threshold.toMillis());
+    }
+
+    @Override
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    private void record(RecordedEvent event) {
+        pinned.record(event.getDuration());
+        String stack = event.getStackTrace() == null ? "unknown" : event.getStackTrace()
+                .getFrames()
+                .stream()
+                .limit(STACK_DEPTH)
+                .map(VirtualThreadPinningMonitor::format)
+                .collect(Collectors.joining("\n"));
+        LongAdder count = stacks.get(stack);
+        if (count == null && stacks.size() >= MAX_STACKS) {
+            droppedStacks.increment();
+            return;
+        }
+        stacks.computeIfAbsent(stack, key -> new LongAdder()).increment();
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
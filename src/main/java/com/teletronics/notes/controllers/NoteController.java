@@ -1,44 +1,181 @@
 package com.teletronics.notes.controllers;
 
+import com.teletronics.notes.configs.NoteMetrics;
+import com.teletronics.notes.dtos.BulkResponseDto;
+import com.teletronics.notes.dtos.CursorPageDto;
 import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.exceptions.InvalidTagQueryException;
+import com.teletronics.notes.exceptions.PreconditionFailedException;
+import com.teletronics.notes.exceptions.VersionConflictException;
 import com.teletronics.notes.mappers.NoteMapper;
 import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.repositories.NoteTextProjection;
+import com.teletronics.notes.search.TagExpression;
+import com.teletronics.notes.services.NoteBulkService;
+import com.teletronics.notes.services.NoteExportService;
+import com.teletronics.notes.services.NoteSearchService;
 import com.teletronics.notes.services.NoteService;
+import com.teletronics.notes.services.NoteTagService;
+import com.teletronics.notes.utils.CountingReader;
+import com.teletronics.notes.utils.NoteCursor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/notes")
+@Profile("!reactive")
 public class NoteController {
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
     @Autowired
     private NoteMapper noteMapper;
     @Autowired
     private NoteService noteService;
+    @Autowired
+    private NoteSearchService noteSearchService;
+    @Autowired
+    private NoteTagService noteTagService;
+    @Autowired
+    private NoteBulkService noteBulkService;
+    @Autowired
+    private NoteExportService noteExportService;
+    @Autowired
+    private NoteMetrics noteMetrics;
+
+    // a full export can take much longer than the default timeout of the async requests
+    @Value("${notes.export.timeout:6h}")
+    private Duration exportTimeout;
+
+    @Value("${notes.export.max-concurrent:4}")
+    private int exportMaxConcurrent;
+
+    private ThreadPoolTaskExecutor exportExecutor;
+
+    /**
+     * Exports run on their own pool so a few long exports do not hold the threads of the other async
+     * requests. Once all its threads are busy a new export is refused with a 503 instead of queued.
+     */
+    @PostConstruct
+    void startExportExecutor() {
+        exportExecutor = new ThreadPoolTaskExecutor();
+        exportExecutor.setCorePoolSize(exportMaxConcurrent);
+        exportExecutor.setMaxPoolSize(exportMaxConcurrent);
+        exportExecutor.setQueueCapacity(0);
+        exportExecutor.setThreadNamePrefix("notes-export-");
+        exportExecutor.initialize();
+    }
+
+    @PreDestroy
+    void stopExportExecutor() {
+        exportExecutor.shutdown();
+    }
 
     @GetMapping
-    public ResponseEntity<Page<NoteDto>> findAll(@RequestParam(required = false) Set<String> tags,
-                                                 @RequestParam(defaultValue = "0") final Integer pageNumber,
-                                                 @RequestParam(defaultValue = "5") final Integer pageSize) {
-        Page<NoteDto> page = noteService.findAll(tags, PageRequest.of(pageNumber,
-                        pageSize,
-                        Sort.by(Sort.Direction.DESC, "createdDate")))
-                .map(entry -> noteMapper.mapFromNoteProjection(entry));
+    public ResponseEntity<Page<NoteProjection>> findAll(@RequestParam(required = false) Set<String> tags,
+                                                        @RequestParam(required = false) final String tagQuery,
+                                                        @RequestParam(defaultValue = "0") final Integer pageNumber,
+                                                        @RequestParam(defaultValue = "5") final Integer pageSize,
+                                                        WebRequest request) {
+        TagExpression expression = parseTagQuery(tags, tagQuery);
+        if(request.checkNotModified(noteService.getNotesVersion())) {
+            return null;
+        }
+        PageRequest pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, "createdDate"));
+        Page<NoteProjection> page = expression != null
+                ? noteTagService.findAll(expression, pageable)
+                : noteService.findAll(tags, pageable);
         return new ResponseEntity<>(page, HttpStatus.OK);
     }
 
+    @GetMapping(params = "after")
+    public ResponseEntity<CursorPageDto<NoteProjection>> findAllAfter(@RequestParam(required = false) Set<String> tags,
+                                                                     @RequestParam(required = false) final String tagQuery,
+                                                                     @RequestParam final String after,
+                                                                     @RequestParam(defaultValue = "5") final Integer pageSize,
+                                                                     WebRequest request) {
+        TagExpression expression = parseTagQuery(tags, tagQuery);
+        if(request.checkNotModified(noteService.getNotesVersion())) {
+            return null;
+        }
+        NoteCursor cursor = StringUtils.hasLength(after) ? NoteCursor.decode(after) : null;
+        Slice<NoteProjection> slice = expression != null
+                ? noteTagService.findAllAfter(expression, cursor, pageSize)
+                : noteService.findAllAfter(tags, cursor, pageSize);
+        List<NoteProjection> content = slice.getContent();
+        String nextCursor = slice.hasNext() ? NoteCursor.next(cursor, content).encode() : null;
+        return new ResponseEntity<>(new CursorPageDto<>(content, slice.getSize(), content.size(), slice.hasNext(), nextCursor), HttpStatus.OK);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<Page<NoteProjection>> search(@RequestParam("q") final String query,
+                                                       @RequestParam(defaultValue = "0") final Integer pageNumber,
+                                                       @RequestParam(defaultValue = "5") final Integer pageSize) {
+        Page<NoteProjection> page = noteSearchService.search(query, PageRequest.of(pageNumber, pageSize));
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @GetMapping("/tags/counts")
+    public ResponseEntity<Map<String, Long>> countByTag(WebRequest request) {
+        if(request.checkNotModified(noteService.getNotesVersion())) {
+            return null;
+        }
+        return new ResponseEntity<>(noteTagService.countByTag(), HttpStatus.OK);
+    }
+
+    /**
+     * Writes the text as UTF-8 on the request thread, a compressed text is decompressed straight to the
+     * response by {@link com.teletronics.notes.configs.NoteTextHttpMessageConverter}. With If-None-Match the
+     * version is checked first, the text is only loaded when it is sent.
+     */
     @GetMapping("/{id}/text")
-    public ResponseEntity<String> findNoteText(@PathVariable("id") final String id) throws Exception {
-        String text = noteService.getNoteText(id);
-        return new ResponseEntity<>(text, HttpStatus.OK);
+    public ResponseEntity<NoteTextProjection> findNoteText(@PathVariable("id") final String id, WebRequest request) throws Exception {
+        if(request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(versionTag(noteService.getNoteTextVersion(id)))) {
+            return null;
+        }
+        NoteTextProjection note = noteService.getNoteText(id);
+        return ResponseEntity.ok()
+                .eTag(versionTag(note.getVersion()))
+                .contentType(TEXT_PLAIN_UTF8)
+                .body(note);
+    }
+
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<Map<String, Integer>> findNoteStats(@PathVariable("id") final String id) throws Exception {
+        Map<String, Integer> stats = noteService.getNoteStats(id);
+        return new ResponseEntity<>(stats, HttpStatus.OK);
     }
 
     @PostMapping
@@ -49,22 +186,143 @@ public class NoteController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<NoteDto> update(@PathVariable("id") final String id, @Valid @RequestBody final NoteDto noteDto) throws Exception{
-        Note note = noteService.findById(id);
-        note = noteService.save(noteMapper.mapToNote(note, noteDto));
-        return new ResponseEntity<>(noteMapper.mapFromNote(note), HttpStatus.OK);
+    public ResponseEntity<NoteDto> update(@PathVariable("id") final String id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch,
+                                          @Valid @RequestBody final NoteDto noteDto) throws Exception{
+        Note changes = noteMapper.mapToNote(null, noteDto);
+        Note note;
+        if(ifMatch == null) {
+            note = noteService.update(id, changes, noteDto.getVersion());
+        } else {
+            try {
+                note = noteService.update(id, changes, parseVersion(ifMatch));
+            } catch (VersionConflictException e) {
+                throw new PreconditionFailedException(e.getMessage());
+            }
+        }
+        return ResponseEntity.ok()
+                .eTag(versionTag(note.getVersion()))
+                .body(noteMapper.mapFromNote(note));
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable("id") final String id) throws Exception {
-        Note note = noteService.findById(id);
-        noteService.delete(note);
+        noteService.deleteById(id);
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping(value = "/_bulk", consumes = "application/x-ndjson")
+    public ResponseEntity<BulkResponseDto> bulk(final Reader operations) throws IOException {
+        BulkResponseDto response = noteBulkService.process(operations);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * Writes the export on the export pool with its own timeout. The headers are only set once the export
+     * runs, a refused export is answered with a plain error.
+     */
+    @GetMapping(value = "/_export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<Void> export(@RequestParam(required = false) Set<String> tags,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final LocalDateTime modifiedSince,
+                                     @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding,
+                                     HttpServletResponse response) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return new WebAsyncTask<>(exportTimeout.toMillis(), exportExecutor, () -> {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            OutputStream out = response.getOutputStream();
+            if(gzip) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                noteExportService.export(tags, modifiedSince, compressed);
+                compressed.finish();
+            } else {
+                noteExportService.export(tags, modifiedSince, out);
+            }
+            return null;
+        });
+    }
+
     @PostMapping(value = "/stats", consumes = "text/plain")
     public ResponseEntity<Map<String, Integer>> getStatsForText(@Valid @RequestBody String noteText) {
         Map<String, Integer> stats  = noteService.findUniqueOccurrence(noteText);
+        noteMetrics.recordStatsRequest(noteText.length(), stats.size());
         return new ResponseEntity<>(stats, HttpStatus.OK);
     }
+
+    @PostMapping(value = "/stats", consumes = "text/plain", params = "stream=true")
+    public ResponseEntity<Map<String, Integer>> getStatsForStream(final Reader noteText) throws IOException {
+        CountingReader reader = new CountingReader(noteText);
+        Map<String, Integer> stats  = noteService.findUniqueOccurrence(reader);
+        noteMetrics.recordStatsRequest(reader.getCount(), stats.size());
+        return new ResponseEntity<>(stats, HttpStatus.OK);
+    }
+
+    /**
+     * ETag of a note and of its text, the version of the note. Notes saved before the version field was
+     * added have none, they are at version 0.
+     */
+    static String versionTag(Long version) {
+        return String.valueOf(version == null ? 0 : version);
+    }
+
+    // If-Match holds the version returned in the ETag of the note or its text, * matches any version.
+    // If-Match only takes strong validators, a weak one never matches.
+    static Long parseVersion(String ifMatch) {
+        String etag = ifMatch.trim();
+        if("*".equals(etag)) {
+            return null;
+        }
+        if(etag.startsWith("W/")) {
+            throw new PreconditionFailedException("If-Match should be a strong ETag");
+        }
+        try {
+            return Long.parseLong(etag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match should be the version of the note");
+        }
+    }
+
+    static TagExpression parseTagQuery(Set<String> tags, String tagQuery) {
+        if(tagQuery == null) {
+            return null;
+        }
+        if(!CollectionUtils.isEmpty(tags)) {
+            throw new InvalidTagQueryException("Use either tags or tagQuery");
+        }
+        return TagExpression.parse(tagQuery);
+    }
+
+    /**
+     * Whether Accept-Encoding allows gzip, named or through *, with a non zero q-value.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if(acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for(String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            double q = 1;
+            for(int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if(parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if("gzip".equalsIgnoreCase(name)) {
+                gzip = q;
+            } else if("*".equals(name)) {
+                any = q;
+            }
+        }
+        double q = gzip != null ? gzip : any != null ? any : 0;
+        return q > 0;
+    }
 }
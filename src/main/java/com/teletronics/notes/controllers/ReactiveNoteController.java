@@ -0,0 +1,233 @@
+package com.teletronics.notes.controllers;
+
+import com.teletronics.notes.configs.NoteMetrics;
+import com.teletronics.notes.dtos.BulkResponseDto;
+import com.teletronics.notes.dtos.CursorPageDto;
+import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.exceptions.PreconditionFailedException;
+import com.teletronics.notes.exceptions.VersionConflictException;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.search.TagExpression;
+import com.teletronics.notes.services.ReactiveNoteService;
+import com.teletronics.notes.utils.NoteCursor;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Same routes and payloads as {@link NoteController} on WebFlux, enabled with the reactive profile.
+ */
+@RestController
+@RequestMapping("/api/notes")
+@Profile("reactive")
+public class ReactiveNoteController {
+    private static final int COMPRESSED_CHUNK_SIZE = 8192;
+
+    @Autowired
+    private NoteMapper noteMapper;
+    @Autowired
+    private ReactiveNoteService noteService;
+    @Autowired
+    private NoteMetrics noteMetrics;
+
+    @GetMapping
+    public Mono<ResponseEntity<Page<NoteProjection>>> findAll(@RequestParam(required = false) Set<String> tags,
+                                                              @RequestParam(required = false) final String tagQuery,
+                                                              @RequestParam(defaultValue = "0") final Integer pageNumber,
+                                                              @RequestParam(defaultValue = "5") final Integer pageSize,
+                                                              ServerWebExchange exchange) {
+        TagExpression expression = NoteController.parseTagQuery(tags, tagQuery);
+        PageRequest pageable = PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, "createdDate"));
+        return noteService.getNotesVersion()
+                .filter(version -> !exchange.checkNotModified(version))
+                .flatMap(version -> expression != null
+                        ? noteService.findAll(expression, pageable)
+                        : noteService.findAll(tags, pageable))
+                .map(page -> new ResponseEntity<>(page, HttpStatus.OK));
+    }
+
+    @GetMapping(params = "after")
+    public Mono<ResponseEntity<CursorPageDto<NoteProjection>>> findAllAfter(@RequestParam(required = false) Set<String> tags,
+                                                                           @RequestParam(required = false) final String tagQuery,
+                                                                           @RequestParam final String after,
+                                                                           @RequestParam(defaultValue = "5") final Integer pageSize,
+                                                                           ServerWebExchange exchange) {
+        TagExpression expression = NoteController.parseTagQuery(tags, tagQuery);
+        NoteCursor cursor = StringUtils.hasLength(after) ? NoteCursor.decode(after) : null;
+        return noteService.getNotesVersion()
+                .filter(version -> !exchange.checkNotModified(version))
+                .flatMap(version -> expression != null
+                        ? noteService.findAllAfter(expression, cursor, pageSize)
+                        : noteService.findAllAfter(tags, cursor, pageSize))
+                .map(slice -> {
+                    List<NoteProjection> content = slice.getContent();
+                    String nextCursor = slice.hasNext() ? NoteCursor.next(cursor, content).encode() : null;
+                    return new ResponseEntity<>(new CursorPageDto<>(content, slice.getSize(), content.size(), slice.hasNext(), nextCursor), HttpStatus.OK);
+                });
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<Page<NoteProjection>>> search(@RequestParam("q") final String query,
+                                                             @RequestParam(defaultValue = "0") final Integer pageNumber,
+                                                             @RequestParam(defaultValue = "5") final Integer pageSize) {
+        return noteService.search(query, PageRequest.of(pageNumber, pageSize))
+                .map(page -> new ResponseEntity<>(page, HttpStatus.OK));
+    }
+
+    @GetMapping("/tags/counts")
+    public Mono<ResponseEntity<Map<String, Long>>> countByTag(ServerWebExchange exchange) {
+        return noteService.getNotesVersion()
+                .filter(version -> !exchange.checkNotModified(version))
+                .flatMap(version -> noteService.countByTag())
+                .map(counts -> new ResponseEntity<>(counts, HttpStatus.OK));
+    }
+
+    @GetMapping("/{id}/text")
+    public Mono<ResponseEntity<String>> findNoteText(@PathVariable("id") final String id, ServerWebExchange exchange) {
+        Mono<Boolean> notModified = exchange.getRequest().getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH)
+                ? noteService.getNoteTextVersion(id)
+                        .map(version -> exchange.checkNotModified(NoteController.versionTag(version)))
+                : Mono.just(false);
+        return notModified
+                .filter(matched -> !matched)
+                .flatMap(matched -> noteService.getNoteText(id))
+                .map(note -> ResponseEntity.ok()
+                        .eTag(NoteController.versionTag(note.getVersion()))
+                        .body(note.getText()));
+    }
+
+    @GetMapping("/{id}/stats")
+    public Mono<ResponseEntity<Map<String, Integer>>> findNoteStats(@PathVariable("id") final String id) {
+        return noteService.getNoteStats(id)
+                .map(stats -> new ResponseEntity<>(stats, HttpStatus.OK));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<NoteDto>> create(@Valid @RequestBody final NoteDto noteDto) {
+        Note note = noteMapper.mapToNote(null, noteDto);
+        return noteService.save(note)
+                .map(saved -> new ResponseEntity<>(noteMapper.mapFromNote(saved), HttpStatus.CREATED));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<NoteDto>> update(@PathVariable("id") final String id,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch,
+                                                @Valid @RequestBody final NoteDto noteDto) {
+        Note changes = noteMapper.mapToNote(null, noteDto);
+        Mono<Note> note = ifMatch == null
+                ? noteService.update(id, changes, noteDto.getVersion())
+                : noteService.update(id, changes, NoteController.parseVersion(ifMatch))
+                        .onErrorMap(VersionConflictException.class, e -> new PreconditionFailedException(e.getMessage()));
+        return note.map(updated -> ResponseEntity.ok()
+                .eTag(NoteController.versionTag(updated.getVersion()))
+                .body(noteMapper.mapFromNote(updated)));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> delete(@PathVariable("id") final String id) {
+        return noteService.deleteById(id)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    @PostMapping(value = "/_bulk", consumes = "application/x-ndjson")
+    public Mono<ResponseEntity<BulkResponseDto>> bulk(@RequestBody final Flux<DataBuffer> operations) {
+        // no limit on the length of a line, like the servlet stack
+        StringDecoder decoder = StringDecoder.textPlainOnly();
+        decoder.setMaxInMemorySize(-1);
+        Flux<String> lines = decoder.decode(operations, ResolvableType.forClass(String.class), null, null);
+        return noteService.bulk(lines)
+                .map(response -> new ResponseEntity<>(response, HttpStatus.OK));
+    }
+
+    @GetMapping(value = "/_export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<byte[]>> export(@RequestParam(required = false) Set<String> tags,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final LocalDateTime modifiedSince,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding) {
+        boolean gzip = NoteController.acceptsGzip(acceptEncoding);
+        Flux<byte[]> lines = noteService.export(tags, modifiedSince);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .body(gzip ? gzip(lines) : lines);
+    }
+
+    @PostMapping(value = "/stats", consumes = "text/plain")
+    public Mono<ResponseEntity<Map<String, Integer>>> getStatsForText(@RequestBody String noteText) {
+        return noteService.countWords(noteText)
+                .doOnNext(stats -> noteMetrics.recordStatsRequest(noteText.length(), stats.size()))
+                .map(stats -> new ResponseEntity<>(stats, HttpStatus.OK));
+    }
+
+    /**
+     * The input size is counted in bytes, the body is never decoded. It is the number of characters for
+     * ASCII texts.
+     */
+    @PostMapping(value = "/stats", consumes = "text/plain", params = "stream=true")
+    public Mono<ResponseEntity<Map<String, Integer>>> getStatsForStream(@RequestBody final Flux<DataBuffer> noteText) {
+        AtomicLong size = new AtomicLong();
+        return noteService.countWords(noteText.doOnNext(buffer -> size.addAndGet(buffer.readableByteCount())))
+                .doOnNext(stats -> noteMetrics.recordStatsRequest(size.get(), stats.size()))
+                .map(stats -> new ResponseEntity<>(stats, HttpStatus.OK));
+    }
+
+    /**
+     * Gzips the lines into chunks of at least 8 KB, the last one ends the gzip stream.
+     */
+    static Flux<byte[]> gzip(Flux<byte[]> lines) {
+        return Flux.defer(() -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(COMPRESSED_CHUNK_SIZE * 2);
+            GZIPOutputStream out;
+            try {
+                out = new GZIPOutputStream(compressed, COMPRESSED_CHUNK_SIZE);
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+            return lines.<byte[]>handle((line, sink) -> {
+                        try {
+                            out.write(line);
+                        } catch (IOException e) {
+                            sink.error(e);
+                            return;
+                        }
+                        if(compressed.size() >= COMPRESSED_CHUNK_SIZE) {
+                            sink.next(compressed.toByteArray());
+                            compressed.reset();
+                        }
+                    })
+                    .concatWith(Mono.fromCallable(() -> {
+                        out.finish();
+                        return compressed.toByteArray();
+                    }));
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package com.teletronics.notes.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * One line of a bulk request, op is create, update or delete. Update and delete need the id, create and
+ * update need the note.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOperationDto implements Serializable {
+    private String op;
+    private String id;
+    private NoteDto note;
+}
@@ -0,0 +1,18 @@
+package com.teletronics.notes.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkResponseDto implements Serializable {
+    private boolean errors;
+    private List<BulkItemResultDto> items;
+}
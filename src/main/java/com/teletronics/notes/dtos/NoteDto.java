@@ -26,4 +26,5 @@ public class NoteDto implements Serializable {
     private Set<@Pattern(regexp = "BUSINESS|PERSONAL|IMPORTANT", message = "Tag should be BUSINESS, PERSONAL or IMPORTANT") String> tags;
     private LocalDateTime createdDate;
     private LocalDateTime lastModifiedDate;
+    private Long version;
 }
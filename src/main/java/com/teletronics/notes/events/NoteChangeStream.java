@@ -0,0 +1,251 @@
+package com.teletronics.notes.events;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.teletronics.notes.models.Note;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.*;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Follows the change stream of the notes collection, so the caches and indexes of this instance also see
+ * the writes of the other instances. Saves and deletes are published as remote {@link NoteSavedEvent} and
+ * {@link NoteDeletedEvent}. The changes made by this instance are skipped, its services published them
+ * already.
+ * <p>
+ * The resume token is saved under the instance id every token-save-interval, and a restart resumes after
+ * it. When the token is too old to resume from, the stream restarts from the current time and a
+ * {@link NoteChangesLostEvent} is published. Change streams need a replica set, so it is off by default.
+ */
+@Component
+@Slf4j
+public class NoteChangeStream {
+    static final String TOKENS_COLLECTION = "changeStreamTokens";
+    private static final long DELETED = -1;
+    // ChangeStreamFatalError, ChangeStreamHistoryLost
+    private static final Set<Integer> HISTORY_LOST_CODES = Set.of(280, 286);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${notes.changes.enabled:false}")
+    private boolean enabled;
+
+    @Value("${notes.changes.instance-id:${HOSTNAME:notes}}")
+    private String instanceId;
+
+    @Value("${notes.changes.token-save-interval:5s}")
+    private Duration tokenSaveInterval;
+
+    @Value("${notes.changes.token-expiry:7d}")
+    private Duration tokenExpiry;
+
+    @Value("${notes.changes.retry-delay:5s}")
+    private Duration retryDelay;
+
+    // version of the notes this instance saved lately, DELETED for the ones it deleted
+    private final Cache<String, Long> localChanges = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .maximumSize(100_000)
+            .build();
+
+    private volatile MessageListenerContainer container;
+    private volatile ScheduledExecutorService scheduler;
+    private volatile Subscription subscription;
+    private volatile BsonValue resumeToken;
+    private BsonValue savedToken;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if(!enabled) {
+            return;
+        }
+        tokens().createIndex(Indexes.ascending("updatedAt"),
+                new IndexOptions().expireAfter(tokenExpiry.toSeconds(), TimeUnit.SECONDS));
+        BsonDocument stored = tokens().find(eq("_id", instanceId)).first();
+        resumeToken = savedToken = stored == null ? null : stored.get("token");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "note-change-stream-tokens");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::saveToken, tokenSaveInterval.toMillis(), tokenSaveInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        container = new DefaultMessageListenerContainer(mongoTemplate, new SimpleAsyncTaskExecutor("note-change-stream-"));
+        container.start();
+        subscribe();
+        log.info("Following the notes change stream as {}{}", instanceId, resumeToken == null ? "" : ", resuming after the saved token");
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        MessageListenerContainer running = container;
+        if(running == null) {
+            return;
+        }
+        container = null;
+        running.stop();
+        scheduler.shutdown();
+        saveToken();
+    }
+
+    @EventListener
+    public void onNoteSaved(NoteSavedEvent event) {
+        if(enabled && !event.remote() && event.note().getVersion() != null) {
+            localChanges.put(event.note().getId(), event.note().getVersion());
+        }
+    }
+
+    @EventListener
+    public void onNoteDeleted(NoteDeletedEvent event) {
+        if(enabled && !event.remote()) {
+            localChanges.put(event.id(), DELETED);
+        }
+    }
+
+    void onChange(Message<ChangeStreamDocument<Document>, Note> message) {
+        ChangeStreamDocument<Document> change = message.getRaw();
+        try {
+            switch (change.getOperationType()) {
+                case INSERT, UPDATE, REPLACE -> {
+                    // no document when the note was deleted before the lookup, its delete follows
+                    Note note = message.getBody();
+                    if(note != null && !isLocal(note.getId(), note.getVersion())) {
+                        eventPublisher.publishEvent(new NoteSavedEvent(note, true));
+                    }
+                }
+                case DELETE -> {
+                    String id = id(change.getDocumentKey());
+                    if(!isLocal(id, DELETED)) {
+                        eventPublisher.publishEvent(new NoteDeletedEvent(id, true));
+                    }
+                }
+                case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                    log.warn("Got a {} event on the notes collection, the search and tag indexes are rebuilt",
+                            change.getOperationTypeString());
+                    eventPublisher.publishEvent(new NoteChangesLostEvent());
+                }
+                default -> {
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error in applying a {} of the notes change stream", change.getOperationTypeString(), e);
+        }
+        resumeToken = change.getResumeToken();
+    }
+
+    void onError(Throwable e) {
+        Subscription current = subscription;
+        if(container == null) {
+            // cursor closed by stop()
+            return;
+        }
+        if(current != null && current.isActive()) {
+            log.error("Error in the notes change stream", e);
+            return;
+        }
+        if(isHistoryLost(e)) {
+            log.warn("The notes change stream can not resume from its token, it restarts from now", e);
+            resumeToken = null;
+            eventPublisher.publishEvent(new NoteChangesLostEvent());
+        } else {
+            log.error("The notes change stream stopped, it restarts in {}", retryDelay, e);
+        }
+        scheduler.schedule(this::restart, retryDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void saveToken() {
+        BsonValue token = resumeToken;
+        if(Objects.equals(token, savedToken)) {
+            return;
+        }
+        try {
+            if(token == null) {
+                tokens().deleteOne(eq("_id", instanceId));
+            } else {
+                tokens().replaceOne(eq("_id", instanceId), new BsonDocument("_id", new BsonString(instanceId))
+                                .append("token", token)
+                                .append("updatedAt", new BsonDateTime(System.currentTimeMillis())),
+                        new ReplaceOptions().upsert(true));
+            }
+            savedToken = token;
+        } catch (Exception e) {
+            log.warn("Error in saving the notes change stream resume token", e);
+        }
+    }
+
+    private synchronized void restart() {
+        if(container == null) {
+            return;
+        }
+        container.remove(subscription);
+        subscribe();
+    }
+
+    private void subscribe() {
+        ChangeStreamRequest.ChangeStreamRequestBuilder<Note> request = ChangeStreamRequest.builder(this::onChange)
+                .collection(mongoTemplate.getCollectionName(Note.class))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                // the stats are not used by the listeners and can be much larger than the text
+                .filter(new Document("$project", new Document("fullDocument.stats", 0)));
+        if(resumeToken != null) {
+            // startAfter also resumes after an invalidate event, unlike resumeAfter
+            request.startAfter(resumeToken);
+        }
+        subscription = container.register(request.build(), Note.class, this::onError);
+    }
+
+    private boolean isLocal(String id, Long version) {
+        Long local = localChanges.getIfPresent(id);
+        if(local == null || version == null) {
+            return false;
+        }
+        return version == DELETED ? local == DELETED : local != DELETED && local >= version;
+    }
+
+    private static String id(BsonDocument documentKey) {
+        BsonValue id = documentKey.get("_id");
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+
+    private static boolean isHistoryLost(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if(cause instanceof MongoException mongoException && HISTORY_LOST_CODES.contains(mongoException.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MongoCollection<BsonDocument> tokens() {
+        return mongoTemplate.getCollection(TOKENS_COLLECTION).withDocumentClass(BsonDocument.class);
+    }
+}
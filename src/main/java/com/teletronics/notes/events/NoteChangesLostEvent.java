@@ -0,0 +1,8 @@
+package com.teletronics.notes.events;
+
+/**
+ * Changes made by other instances may have been missed, the change stream could not resume where it
+ * stopped or the notes collection was dropped or renamed.
+ */
+public record NoteChangesLostEvent() {
+}
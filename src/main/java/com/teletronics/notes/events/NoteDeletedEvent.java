@@ -0,0 +1,10 @@
+package com.teletronics.notes.events;
+
+/**
+ * @param remote true when the note was deleted by another instance and the event comes from the change stream
+ */
+public record NoteDeletedEvent(String id, boolean remote) {
+    public NoteDeletedEvent(String id) {
+        this(id, false);
+    }
+}
@@ -0,0 +1,12 @@
+package com.teletronics.notes.events;
+
+import com.teletronics.notes.models.Note;
+
+/**
+ * @param remote true when the note was saved by another instance and the event comes from the change stream
+ */
+public record NoteSavedEvent(Note note, boolean remote) {
+    public NoteSavedEvent(Note note) {
+        this(note, false);
+    }
+}
@@ -0,0 +1,10 @@
+package com.teletronics.notes.exceptions;
+
+public class InvalidTagQueryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidTagQueryException(String msg) {
+        super(msg);
+    }
+}
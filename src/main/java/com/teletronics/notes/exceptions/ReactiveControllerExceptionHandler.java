@@ -0,0 +1,75 @@
+package com.teletronics.notes.exceptions;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Date;
+
+/**
+ * Same error responses as {@link ControllerExceptionHandler} for the reactive profile.
+ */
+@RestControllerAdvice
+@Profile("reactive")
+public class ReactiveControllerExceptionHandler {
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<ErrorMessage> handleRuntimeException(RuntimeException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.INTERNAL_SERVER_ERROR, ex, request);
+    }
+
+    // validation and binding errors of WebFlux, they keep their status
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ErrorMessage> responseStatusException(ResponseStatusException ex, ServerHttpRequest request) {
+        return errorMessage(ex.getStatusCode(), ex, request);
+    }
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<ErrorMessage> resourceNotFoundException(ResourceNotFoundException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.NOT_FOUND, ex, request);
+    }
+
+    @ExceptionHandler(StatsLimitExceededException.class)
+    public ResponseEntity<ErrorMessage> statsLimitExceededException(StatsLimitExceededException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.PAYLOAD_TOO_LARGE, ex, request);
+    }
+
+    @ExceptionHandler(SearchUnavailableException.class)
+    public ResponseEntity<ErrorMessage> searchUnavailableException(SearchUnavailableException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.SERVICE_UNAVAILABLE, ex, request);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorMessage> invalidCursorException(InvalidCursorException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(InvalidTagQueryException.class)
+    public ResponseEntity<ErrorMessage> invalidTagQueryException(InvalidTagQueryException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.BAD_REQUEST, ex, request);
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<ErrorMessage> versionConflictException(VersionConflictException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.CONFLICT, ex, request);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ErrorMessage> preconditionFailedException(PreconditionFailedException ex, ServerHttpRequest request) {
+        return errorMessage(HttpStatus.PRECONDITION_FAILED, ex, request);
+    }
+
+    private static ResponseEntity<ErrorMessage> errorMessage(HttpStatusCode status, RuntimeException ex, ServerHttpRequest request) {
+        ErrorMessage message = new ErrorMessage(
+                status.value(),
+                new Date(),
+                ex.getMessage(),
+                "uri=" + request.getPath().value());
+
+        return new ResponseEntity<ErrorMessage>(message, status);
+    }
+}
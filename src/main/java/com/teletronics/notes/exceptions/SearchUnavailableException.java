@@ -0,0 +1,10 @@
+package com.teletronics.notes.exceptions;
+
+public class SearchUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SearchUnavailableException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,10 @@
+package com.teletronics.notes.exceptions;
+
+public class StatsLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StatsLimitExceededException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,10 @@
+package com.teletronics.notes.exceptions;
+
+public class VersionConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public VersionConflictException(String msg) {
+        super(msg);
+    }
+}
@@ -2,14 +2,12 @@ package com.teletronics.notes.mappers;
 
 import com.teletronics.notes.dtos.NoteDto;
 import com.teletronics.notes.models.Note;
-import com.teletronics.notes.models.Tag;
-import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.utils.TagMask;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 @Component
 public class NoteMapper {
@@ -19,14 +17,13 @@ public class NoteMapper {
             note = new Note();
         }
         note.setTitle(source.getTitle());
+        if(!Objects.equals(note.getText(), source.getText())) {
+            note.setStats(null);
+        }
         note.setText(source.getText());
 
         if(!CollectionUtils.isEmpty(source.getTags())){
-            Set<Tag> tags = source.getTags()
-                    .stream()
-                    .map(Tag::valueOf)
-                    .collect(Collectors.toSet());
-            note.setTags(tags);
+            note.setTags(TagMask.tags(TagMask.ofNames(source.getTags())));
         }
         return note;
     }
@@ -36,22 +33,11 @@ public class NoteMapper {
         noteDto.setId(source.getId());
         noteDto.setTitle(source.getTitle());
         noteDto.setText(source.getText());
+        noteDto.setVersion(source.getVersion());
 
         if(!CollectionUtils.isEmpty(source.getTags())){
-            Set<String> tags = source.getTags()
-                    .stream()
-                    .map(Enum::name)
-                    .collect(Collectors.toSet());
-            noteDto.setTags(tags);
+            noteDto.setTags(TagMask.names(TagMask.ofTags(source.getTags())));
         }
         return noteDto;
     }
-
-    public NoteDto mapFromNoteProjection(NoteProjection source) {
-        NoteDto noteDto = new NoteDto();
-        noteDto.setId(source.getId());
-        noteDto.setTitle(source.getTitle());
-        noteDto.setCreatedDate(source.getCreatedDate());
-        return noteDto;
-    }
 }
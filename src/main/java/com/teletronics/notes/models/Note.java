@@ -1,5 +1,6 @@
 package com.teletronics.notes.models;
 
+import com.teletronics.notes.configs.NoteTextCompression;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -7,12 +8,22 @@ import lombok.ToString;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.convert.ValueConverter;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.Set;
 
 @Document(collection = "notes")
+@CompoundIndexes({
+        @CompoundIndex(name = "createdDate_id", def = "{ 'createdDate': -1, '_id': -1 }"),
+        @CompoundIndex(name = "tags_createdDate_id", def = "{ 'tags': 1, 'createdDate': -1, '_id': -1 }")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,10 +32,16 @@ public class Note {
     @Id
     private String id;
     private String title;
+    @ValueConverter(NoteTextCompression.TextConverter.class)
     private String text;
     private Set<Tag> tags;
+    private Map<String, Integer> stats;
+    private String textHash;
     @CreatedDate
     private LocalDateTime createdDate;
     @LastModifiedDate
+    @Indexed
     private LocalDateTime lastModifiedDate;
+    @Version
+    private Long version;
 }
@@ -1,7 +1,15 @@
 package com.teletronics.notes.repositories;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 import java.time.LocalDateTime;
 
+/**
+ * Row of the listings, written to the response as is.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"id", "title", "createdDate"})
 public interface NoteProjection {
     String getId();
     String getTitle();
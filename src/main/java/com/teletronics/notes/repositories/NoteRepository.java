@@ -1,15 +1,44 @@
 package com.teletronics.notes.repositories;
 
 import com.teletronics.notes.models.Note;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 @Repository
 public interface NoteRepository extends MongoRepository<Note, String > {
     Page<NoteProjection> findAllProjectedBy(Pageable pageable);
     Page<NoteProjection> findByTagsIn(Set<String> tags, Pageable pageable);
+    Slice<NoteProjection> findSliceProjectedBy(Pageable pageable);
+    Slice<NoteProjection> findSliceByTagsIn(Set<String> tags, Pageable pageable);
+
+    // notes without a created date and string ids sort after the cursor
+    @Query(value = "{ $or: [ { createdDate: { $lt: ?0 } }, { createdDate: ?0, _id: { $lt: ?1 } }, { createdDate: ?0, _id: { $type: 'string' } }, { createdDate: null } ] }",
+            fields = "{ title: 1, createdDate: 1 }")
+    Slice<NoteProjection> findSliceAfter(LocalDateTime createdDate, ObjectId id, Pageable pageable);
+
+    @Query(value = "{ tags: { $in: ?2 }, $or: [ { createdDate: { $lt: ?0 } }, { createdDate: ?0, _id: { $lt: ?1 } }, { createdDate: ?0, _id: { $type: 'string' } }, { createdDate: null } ] }",
+            fields = "{ title: 1, createdDate: 1 }")
+    Slice<NoteProjection> findSliceByTagsInAfter(LocalDateTime createdDate, ObjectId id, Set<String> tags, Pageable pageable);
+
+    Optional<NoteStatsProjection> findStatsById(String id);
+    // the text as stored, compressed or not
+    @Query(value = "{ _id: ?0 }", fields = "{ text: 1, version: 1 }")
+    Optional<Document> findStoredTextById(String id);
+    @Query(value = "{ _id: ?0 }", fields = "{ version: 1 }")
+    Optional<Document> findVersionById(String id);
+    Optional<NoteVersionProjection> findFirstByOrderByLastModifiedDateDesc();
+    long removeById(String id);
+    List<NoteProjection> findByIdIn(Collection<String> ids);
 }
@@ -0,0 +1,7 @@
+package com.teletronics.notes.repositories;
+
+import java.util.Map;
+
+public interface NoteStatsProjection {
+    Map<String, Integer> getStats();
+}
@@ -0,0 +1,29 @@
+package com.teletronics.notes.repositories;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public interface NoteTextProjection {
+    String getText();
+    Long getVersion();
+
+    /**
+     * Characters the text takes in the cache.
+     */
+    default int weight() {
+        String text = getText();
+        return text == null ? 0 : text.length();
+    }
+
+    /**
+     * Writes the text as UTF-8.
+     */
+    default void writeTo(OutputStream out) throws IOException {
+        String text = getText();
+        if(text != null) {
+            out.write(text.getBytes(UTF_8));
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.teletronics.notes.repositories;
+
+import java.time.LocalDateTime;
+
+public interface NoteVersionProjection {
+    LocalDateTime getLastModifiedDate();
+}
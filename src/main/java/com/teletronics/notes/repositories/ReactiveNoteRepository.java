@@ -0,0 +1,44 @@
+package com.teletronics.notes.repositories;
+
+import com.teletronics.notes.models.Note;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Non blocking counterpart of {@link NoteRepository} used by the reactive profile.
+ */
+@Repository
+@Profile("reactive")
+public interface ReactiveNoteRepository extends ReactiveMongoRepository<Note, String> {
+    Flux<NoteProjection> findAllProjectedBy(Pageable pageable);
+    Flux<NoteProjection> findByTagsIn(Set<String> tags, Pageable pageable);
+    Mono<Long> countByTagsIn(Set<String> tags);
+
+    // same queries as NoteRepository
+    @Query(value = "{ $or: [ { createdDate: { $lt: ?0 } }, { createdDate: ?0, _id: { $lt: ?1 } }, { createdDate: ?0, _id: { $type: 'string' } }, { createdDate: null } ] }",
+            fields = "{ title: 1, createdDate: 1 }")
+    Flux<NoteProjection> findAfter(LocalDateTime createdDate, ObjectId id, Pageable pageable);
+
+    @Query(value = "{ tags: { $in: ?2 }, $or: [ { createdDate: { $lt: ?0 } }, { createdDate: ?0, _id: { $lt: ?1 } }, { createdDate: ?0, _id: { $type: 'string' } }, { createdDate: null } ] }",
+            fields = "{ title: 1, createdDate: 1 }")
+    Flux<NoteProjection> findByTagsInAfter(LocalDateTime createdDate, ObjectId id, Set<String> tags, Pageable pageable);
+
+    Mono<NoteStatsProjection> findStatsById(String id);
+    Mono<NoteTextProjection> findTextById(String id);
+    @Query(value = "{ _id: ?0 }", fields = "{ version: 1 }")
+    Mono<Document> findVersionById(String id);
+    Mono<NoteVersionProjection> findFirstByOrderByLastModifiedDateDesc();
+    Mono<Long> removeById(String id);
+    Flux<NoteProjection> findByIdIn(Collection<String> ids);
+}
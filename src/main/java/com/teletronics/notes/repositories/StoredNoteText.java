@@ -0,0 +1,77 @@
+package com.teletronics.notes.repositories;
+
+import com.teletronics.notes.utils.TextCompression;
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Text of a note as stored. A compressed text stays compressed, in the text cache too, and is decompressed
+ * each time it is read or written out, a block at a time when written.
+ */
+public final class StoredNoteText implements NoteTextProjection {
+    private final String text;
+    private final byte[] compressed;
+    private final Long version;
+
+    private StoredNoteText(String text, byte[] compressed, Long version) {
+        this.text = text;
+        this.compressed = compressed;
+        this.version = version;
+    }
+
+    public StoredNoteText(String text, Long version) {
+        this(text, null, version);
+    }
+
+    /**
+     * Reads the text and version of a note document as stored.
+     */
+    public static StoredNoteText of(Document document) {
+        Long version = versionOf(document);
+        Object text = document.get("text");
+        if(text instanceof Binary binary) {
+            return new StoredNoteText(null, binary.getData(), version);
+        }
+        return new StoredNoteText((String) text, null, version);
+    }
+
+    /**
+     * Version of a stored note document, null when it was saved before the version field was added.
+     */
+    public static Long versionOf(Document document) {
+        Number version = (Number) document.get("version");
+        return version == null ? null : version.longValue();
+    }
+
+    @Override
+    public String getText() {
+        return compressed == null ? text : TextCompression.decompressToString(compressed);
+    }
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int weight() {
+        // two bytes per character
+        return compressed == null ? NoteTextProjection.super.weight() : (compressed.length + 1) / 2;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        if(compressed == null) {
+            NoteTextProjection.super.writeTo(out);
+        } else {
+            TextCompression.decompressTo(compressed, out);
+        }
+    }
+
+    public boolean isCompressed() {
+        return compressed != null;
+    }
+}
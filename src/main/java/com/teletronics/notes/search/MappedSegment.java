@@ -0,0 +1,167 @@
+package com.teletronics.notes.search;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable segment read from a file written by {@link SegmentWriter}. The file is memory mapped and
+ * lookups and posting cursors read the mapped bytes in place, nothing is loaded on the heap.
+ */
+class MappedSegment implements Segment {
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final int docLengthsOffset;
+    private final int idOffsetsOffset;
+    private final int idBytesOffset;
+    private final int sortedIdsOffset;
+    private final int termOffsetsOffset;
+    private final int termBytesOffset;
+    private final int termEntriesOffset;
+
+    private MappedSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        int footer = buffer.capacity() - SegmentWriter.FOOTER_SIZE;
+        if (footer < 0 || buffer.getInt(footer) != SegmentWriter.MAGIC
+                || buffer.getInt(footer + 4) != SegmentWriter.VERSION) {
+            throw new IOException("Not a search segment file " + path);
+        }
+        docCount = buffer.getInt(footer + 8);
+        termCount = buffer.getInt(footer + 12);
+        docLengthsOffset = buffer.getInt(footer + 16);
+        idOffsetsOffset = buffer.getInt(footer + 20);
+        idBytesOffset = buffer.getInt(footer + 24);
+        sortedIdsOffset = buffer.getInt(footer + 28);
+        termOffsetsOffset = buffer.getInt(footer + 32);
+        termBytesOffset = buffer.getInt(footer + 36);
+        termEntriesOffset = buffer.getInt(footer + 40);
+    }
+
+    static MappedSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public String docId(int doc) {
+        int start = idBytesOffset + buffer.getInt(idOffsetsOffset + doc * 4);
+        int end = idBytesOffset + buffer.getInt(idOffsetsOffset + (doc + 1) * 4);
+        return decode(start, end);
+    }
+
+    @Override
+    public int docLength(int doc) {
+        return buffer.getInt(docLengthsOffset + doc * 4);
+    }
+
+    @Override
+    public int ordinalOf(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int doc = buffer.getInt(sortedIdsOffset + middle * 4);
+            int start = idBytesOffset + buffer.getInt(idOffsetsOffset + doc * 4);
+            int end = idBytesOffset + buffer.getInt(idOffsetsOffset + (doc + 1) * 4);
+            int comparison = compare(start, end, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return doc;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public PostingsCursor postings(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(termStart(middle), termStart(middle + 1), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                int entry = termEntriesOffset + middle * SegmentWriter.TERM_ENTRY_SIZE;
+                int start = buffer.getInt(entry);
+                return new PostingsCursor(buffer, start, start + buffer.getInt(entry + 4));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<String> terms() {
+        return new Iterator<>() {
+            private int term;
+
+            @Override
+            public boolean hasNext() {
+                return term < termCount;
+            }
+
+            @Override
+            public String next() {
+                if (term >= termCount) {
+                    throw new NoSuchElementException();
+                }
+                String value = decode(termStart(term), termStart(term + 1));
+                term++;
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    private int termStart(int term) {
+        return termBytesOffset + buffer.getInt(termOffsetsOffset + term * 4);
+    }
+
+    private int compare(int start, int end, byte[] key) {
+        int length = end - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Integer.compare(buffer.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
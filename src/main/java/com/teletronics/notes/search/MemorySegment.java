@@ -0,0 +1,105 @@
+package com.teletronics.notes.search;
+
+import java.util.*;
+
+/**
+ * Segment that receives the newly indexed docs.
+ */
+class MemorySegment implements Segment {
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] docIds = new String[64];
+    private int[] docLengths = new int[64];
+    private int docCount;
+    private long sizeInBytes;
+
+    /**
+     * Adds a doc, an older doc with the same id must have been deleted before.
+     *
+     * @return the ordinal of the doc
+     */
+    int add(String id, Map<String, Integer> terms, int length) {
+        int doc = docCount++;
+        if (doc == docIds.length) {
+            docIds = Arrays.copyOf(docIds, doc << 1);
+            docLengths = Arrays.copyOf(docLengths, doc << 1);
+        }
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new PostingList()).add(doc, term.getValue());
+            sizeInBytes += 4;
+        }
+        docIds[doc] = id;
+        docLengths[doc] = length;
+        ordinals.put(id, doc);
+        return doc;
+    }
+
+    /**
+     * @return a new segment with the docs that are not deleted
+     */
+    MemorySegment compact(BitSet deleted) {
+        int[] remap = new int[docCount];
+        MemorySegment compacted = new MemorySegment();
+        for (int doc = 0; doc < docCount; doc++) {
+            remap[doc] = deleted.get(doc) ? -1 : compacted.addDoc(docIds[doc], docLengths[doc]);
+        }
+        for (Map.Entry<String, PostingList> term : postings.entrySet()) {
+            PostingsCursor cursor = term.getValue().cursor();
+            PostingList list = null;
+            while (cursor.next()) {
+                int doc = remap[cursor.doc()];
+                if (doc >= 0) {
+                    if (list == null) {
+                        list = compacted.postings.computeIfAbsent(term.getKey(), key -> new PostingList());
+                    }
+                    list.add(doc, cursor.freq());
+                    compacted.sizeInBytes += 4;
+                }
+            }
+        }
+        return compacted;
+    }
+
+    private int addDoc(String id, int length) {
+        return add(id, Map.of(), length);
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public String docId(int doc) {
+        return docIds[doc];
+    }
+
+    @Override
+    public int docLength(int doc) {
+        return docLengths[doc];
+    }
+
+    @Override
+    public int ordinalOf(String id) {
+        return ordinals.getOrDefault(id, -1);
+    }
+
+    @Override
+    public PostingsCursor postings(String term) {
+        PostingList list = postings.get(term);
+        return list == null ? null : list.cursor();
+    }
+
+    @Override
+    public Iterator<String> terms() {
+        List<String> terms = new ArrayList<>(postings.keySet());
+        Collections.sort(terms);
+        return terms.iterator();
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+}
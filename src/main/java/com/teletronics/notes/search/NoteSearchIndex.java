@@ -0,0 +1,671 @@
+package com.teletronics.notes.search;
+
+import com.teletronics.notes.utils.WordFrequencyCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index of the note title and text. Terms come from {@link WordFrequencyCounter}, so they
+ * follow the same tokenization as the /stats endpoint, words longer than
+ * {@link WordFrequencyCounter#MAX_WORD_LENGTH} characters are left out. Results are ranked with BM25.
+ * <p>
+ * New docs go to a {@link MemorySegment}. Updates and deletes only mark the old doc as deleted. Without
+ * a directory the index stays in memory and the memory segment is compacted once deleted docs
+ * outnumber the live ones. Once {@link #open(Path)} is called the memory segment is flushed to an
+ * immutable {@link MappedSegment} file by a background thread, small segment files are merged and a
+ * {@link SearchCheckpoint} records which segments are durable, their deletes and the newest last
+ * modified date they contain.
+ */
+@Component
+@Slf4j
+public class NoteSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_DELETES_TO_COMPACT = 1024;
+    private static final int MAX_SEGMENTS = 8;
+    private static final int MERGE_FACTOR = 4;
+    private static final long MAX_MERGED_SEGMENT_BYTES = 1L << 30;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final Comparator<ScoredDoc> WORST_FIRST = Comparator.comparingDouble(ScoredDoc::score)
+            .thenComparing(ScoredDoc::segment, Comparator.reverseOrder())
+            .thenComparing(ScoredDoc::doc, Comparator.reverseOrder());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // flushes and merges run one at a time
+    private final Object maintenanceLock = new Object();
+
+    // searched segments, flushed files first and the memory segment that receives new docs last
+    private final List<SegmentState> segments = new ArrayList<>();
+    private SegmentState buffer = new SegmentState(new MemorySegment(), null);
+    private int liveDocs;
+    private long totalLength;
+    private LocalDateTime watermark;
+
+    private Path directory;
+    private long generation;
+    private LocalDateTime checkpointWatermark;
+    private boolean deletesChanged;
+    private ScheduledExecutorService maintenance;
+    private int flushDocs = Integer.MAX_VALUE;
+    private boolean flushScheduled;
+
+    public NoteSearchIndex() {
+        segments.add(buffer);
+    }
+
+    public void index(String id, String title, String text) {
+        index(id, title, text, null);
+    }
+
+    /**
+     * Indexes a note, replacing its previous version.
+     *
+     * @param lastModified last modified date of the note, it moves the checkpoint watermark
+     */
+    public void index(String id, String title, String text, LocalDateTime lastModified) {
+        WordFrequencyCounter counter = new WordFrequencyCounter().skipLongWords(WordFrequencyCounter.MAX_WORD_LENGTH);
+        if (StringUtils.hasLength(title)) {
+            counter.accept(title).accept(' ');
+        }
+        if (StringUtils.hasLength(text)) {
+            counter.accept(text);
+        }
+        Map<String, Integer> terms = new HashMap<>();
+        int[] length = new int[1];
+        counter.forEach((term, count) -> {
+            terms.put(term, count);
+            length[0] += count;
+        });
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            ((MemorySegment) buffer.segment).add(id, terms, length[0]);
+            liveDocs++;
+            totalLength += length[0];
+            if (lastModified != null && (watermark == null || lastModified.isAfter(watermark))) {
+                watermark = lastModified;
+            }
+            if (maintenance != null && !flushScheduled && buffer.segment.docCount() >= flushDocs) {
+                flushScheduled = true;
+                maintenance.execute(this::maintain);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the matching notes for the requested page, best match first, and the total
+     * number of matches. A note matches when it contains at least one term of the query.
+     */
+    public SearchHits search(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>();
+        new WordFrequencyCounter().skipLongWords(WordFrequencyCounter.MAX_WORD_LENGTH).accept(query).forEach((term, count) -> terms.add(term));
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || liveDocs == 0 || limit <= 0) {
+                return new SearchHits(List.of(), 0);
+            }
+            float averageLength = (float) totalLength / liveDocs;
+            List<String> matchedTerms = new ArrayList<>();
+            List<Float> idfs = new ArrayList<>();
+            for (String term : terms) {
+                int frequency = 0;
+                for (SegmentState state : segments) {
+                    frequency += state.liveFrequency(term);
+                }
+                if (frequency > 0) {
+                    matchedTerms.add(term);
+                    idfs.add((float) Math.log(1 + (liveDocs - frequency + 0.5) / (frequency + 0.5)));
+                }
+            }
+
+            int top = offset + limit;
+            PriorityQueue<ScoredDoc> best = new PriorityQueue<>(WORST_FIRST);
+            long total = 0;
+            for (int s = 0; s < segments.size(); s++) {
+                SegmentState state = segments.get(s);
+                PostingsCursor[] cursors = new PostingsCursor[matchedTerms.size()];
+                for (int i = 0; i < cursors.length; i++) {
+                    cursors[i] = state.segment.postings(matchedTerms.get(i));
+                    if (cursors[i] != null) {
+                        cursors[i].next();
+                    }
+                }
+                while (true) {
+                    int doc = Integer.MAX_VALUE;
+                    for (PostingsCursor cursor : cursors) {
+                        if (cursor != null) {
+                            doc = Math.min(doc, cursor.doc());
+                        }
+                    }
+                    if (doc == Integer.MAX_VALUE) {
+                        break;
+                    }
+                    float score = 0;
+                    float norm = K1 * (1 - B + B * state.segment.docLength(doc) / averageLength);
+                    for (int i = 0; i < cursors.length; i++) {
+                        PostingsCursor cursor = cursors[i];
+                        if (cursor != null && cursor.doc() == doc) {
+                            score += idfs.get(i) * cursor.freq() * (K1 + 1) / (cursor.freq() + norm);
+                            cursor.next();
+                        }
+                    }
+                    if (state.deleted.get(doc)) {
+                        continue;
+                    }
+                    total++;
+                    best.offer(new ScoredDoc(s, doc, score));
+                    if (best.size() > top) {
+                        best.poll();
+                    }
+                }
+            }
+
+            List<ScoredDoc> ranked = new ArrayList<>(best);
+            ranked.sort(WORST_FIRST.reversed());
+            List<String> ids = new ArrayList<>();
+            for (int i = offset; i < ranked.size(); i++) {
+                ScoredDoc hit = ranked.get(i);
+                ids.add(segments.get(hit.segment()).segment.docId(hit.doc()));
+            }
+            return new SearchHits(ids, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the segments of the last checkpoint of the directory, creating it when needed. From then on
+     * the index is flushed to that directory by {@link #startMaintenance(Duration, int)}.
+     *
+     * @return the last modified date of the newest note in the loaded segments, empty when the directory
+     * has no checkpoint and the index has to be built from scratch
+     */
+    public Optional<LocalDateTime> open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Optional<SearchCheckpoint> checkpoint = SearchCheckpoint.read(directory);
+        Set<String> referenced = new HashSet<>(Set.of(SearchCheckpoint.FILE_NAME));
+        List<SegmentState> loaded = new ArrayList<>();
+        if (checkpoint.isPresent()) {
+            for (String name : checkpoint.get().segments()) {
+                MappedSegment segment = MappedSegment.open(directory.resolve(name));
+                SegmentState state = new SegmentState(segment, name);
+                String deletes = SearchCheckpoint.deletesFileName(name, checkpoint.get().generation());
+                if (Files.exists(directory.resolve(deletes))) {
+                    state.deleted = BitSet.valueOf(Files.readAllBytes(directory.resolve(deletes)));
+                    referenced.add(deletes);
+                }
+                loaded.add(state);
+                referenced.add(name);
+            }
+        }
+        // only the files the index writes itself are removed, anything else in the directory is left alone
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, NoteSearchIndex::isIndexFile)) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            this.directory = directory;
+            this.generation = checkpoint.map(SearchCheckpoint::generation).orElse(0L);
+            this.checkpointWatermark = checkpoint.map(SearchCheckpoint::watermark).orElse(null);
+            for (SegmentState state : loaded) {
+                for (int doc = 0; doc < state.segment.docCount(); doc++) {
+                    if (!state.deleted.get(doc)) {
+                        // a note indexed before the directory was opened is newer than its stored copy
+                        if (buffer.liveOrdinalOf(state.segment.docId(doc)) >= 0) {
+                            state.deleted.set(doc);
+                        } else {
+                            liveDocs++;
+                            totalLength += state.segment.docLength(doc);
+                        }
+                    }
+                }
+            }
+            segments.addAll(0, loaded);
+            if (checkpointWatermark != null && (watermark == null || checkpointWatermark.isAfter(watermark))) {
+                watermark = checkpointWatermark;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index opened from {} with {} segments", directory, loaded.size());
+        return Optional.ofNullable(checkpointWatermark);
+    }
+
+    /**
+     * Starts deleting the docs of the flushed segments whose id is not given to the returned
+     * consumer, so notes deleted while the application was down do not come back. Call it before
+     * the maintenance starts and call {@link Reconciliation#run()} once every existing id is accepted.
+     */
+    public Reconciliation reconcile() {
+        lock.readLock().lock();
+        try {
+            return new Reconciliation(segments.stream().filter(state -> state.name != null).toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the memory segment every interval, or sooner once it holds the given number of docs,
+     * and merges segment files in the background.
+     */
+    public void startMaintenance(Duration interval, int flushDocs) {
+        lock.writeLock().lock();
+        try {
+            if (directory == null || maintenance != null) {
+                return;
+            }
+            this.flushDocs = flushDocs;
+            maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "search-index-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            maintenance.scheduleWithFixedDelay(this::maintain, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the maintenance and flushes what is left in memory.
+     */
+    public void close() {
+        stopMaintenance();
+        if (directory != null) {
+            flush();
+        }
+    }
+
+    /**
+     * Removes every note, before the index is built again. The maintenance stops until
+     * {@link #startMaintenance} is called again and an opened index is checkpointed empty, so a
+     * restart during the build starts it from scratch.
+     */
+    public void clear() {
+        stopMaintenance();
+        List<String> dropped = new ArrayList<>();
+        long droppedGeneration;
+        synchronized (maintenanceLock) {
+            lock.writeLock().lock();
+            try {
+                droppedGeneration = generation;
+                for (SegmentState state : segments) {
+                    if (state.name != null) {
+                        dropped.add(state.name);
+                    }
+                }
+                segments.clear();
+                buffer = new SegmentState(new MemorySegment(), null);
+                segments.add(buffer);
+                liveDocs = 0;
+                totalLength = 0;
+                watermark = null;
+                flushScheduled = false;
+                if (directory != null) {
+                    checkpoint(null);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        for (String name : dropped) {
+            deleteQuietly(directory.resolve(SearchCheckpoint.deletesFileName(name, droppedGeneration)));
+            deleteQuietly(directory.resolve(name));
+        }
+    }
+
+    private void stopMaintenance() {
+        ScheduledExecutorService executor;
+        lock.writeLock().lock();
+        try {
+            executor = maintenance;
+            maintenance = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void maintain() {
+        try {
+            flush();
+            merge();
+        } catch (Exception e) {
+            log.error("Error in maintaining the search index", e);
+        }
+    }
+
+    /**
+     * Writes the memory segment to a new segment file and checkpoints.
+     */
+    void flush() {
+        synchronized (maintenanceLock) {
+            SegmentState flushing = null;
+            BitSet snapshot = null;
+            LocalDateTime flushedWatermark;
+            lock.writeLock().lock();
+            try {
+                flushScheduled = false;
+                if (buffer.segment.docCount() > 0) {
+                    flushing = buffer;
+                    snapshot = (BitSet) flushing.deleted.clone();
+                    buffer = new SegmentState(new MemorySegment(), null);
+                    segments.add(buffer);
+                } else if (!deletesChanged) {
+                    return;
+                }
+                // every note up to this date is now in a segment file or in the one being written
+                flushedWatermark = watermark;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (flushing != null) {
+                String name = nextSegmentName();
+                MappedSegment segment;
+                int[][] remap;
+                try {
+                    remap = SegmentWriter.write(List.of(flushing.segment), List.of(snapshot), directory.resolve(name));
+                    segment = MappedSegment.open(directory.resolve(name));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                lock.writeLock().lock();
+                try {
+                    SegmentState flushed = new SegmentState(segment, name);
+                    flushed.carryDeletes(flushing, snapshot, remap[0]);
+                    segments.set(segments.indexOf(flushing), flushed);
+                    checkpoint(flushedWatermark);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } else {
+                lock.writeLock().lock();
+                try {
+                    checkpoint(checkpointWatermark);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the smallest segment files into one once there are too many of them.
+     */
+    void merge() {
+        synchronized (maintenanceLock) {
+            List<SegmentState> merging;
+            List<BitSet> snapshots = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                List<SegmentState> files = new ArrayList<>(segments.stream().filter(state -> state.name != null).toList());
+                if (files.size() <= MAX_SEGMENTS) {
+                    return;
+                }
+                files.sort(Comparator.comparingLong(state -> state.segment.sizeInBytes()));
+                merging = new ArrayList<>();
+                long size = 0;
+                for (SegmentState state : files) {
+                    if (merging.size() == MERGE_FACTOR || size + state.segment.sizeInBytes() > MAX_MERGED_SEGMENT_BYTES) {
+                        break;
+                    }
+                    merging.add(state);
+                    size += state.segment.sizeInBytes();
+                }
+                if (merging.size() < 2) {
+                    return;
+                }
+                for (SegmentState state : merging) {
+                    snapshots.add((BitSet) state.deleted.clone());
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            String name = nextSegmentName();
+            MappedSegment segment;
+            int[][] remap;
+            try {
+                remap = SegmentWriter.write(merging.stream().map(state -> state.segment).toList(), snapshots, directory.resolve(name));
+                segment = MappedSegment.open(directory.resolve(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            lock.writeLock().lock();
+            try {
+                SegmentState merged = new SegmentState(segment, name);
+                for (int i = 0; i < merging.size(); i++) {
+                    merged.carryDeletes(merging.get(i), snapshots.get(i), remap[i]);
+                }
+                segments.set(segments.indexOf(merging.get(0)), merged);
+                segments.removeAll(merging.subList(1, merging.size()));
+                checkpoint(checkpointWatermark);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (SegmentState state : merging) {
+                deleteQuietly(directory.resolve(state.name));
+            }
+            log.debug("Merged {} search segments into {}", merging.size(), name);
+        }
+    }
+
+    private void checkpoint(LocalDateTime checkpointed) {
+        long next = generation + 1;
+        List<String> names = new ArrayList<>();
+        try {
+            for (SegmentState state : segments) {
+                if (state.name != null) {
+                    names.add(state.name);
+                    if (!state.deleted.isEmpty()) {
+                        Files.write(directory.resolve(SearchCheckpoint.deletesFileName(state.name, next)), state.deleted.toByteArray());
+                    }
+                }
+            }
+            new SearchCheckpoint(next, names, checkpointed).write(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (String name : names) {
+            deleteQuietly(directory.resolve(SearchCheckpoint.deletesFileName(name, generation)));
+        }
+        generation = next;
+        checkpointWatermark = checkpointed;
+        deletesChanged = false;
+    }
+
+    private String nextSegmentName() {
+        return SEGMENT_PREFIX + UUID.randomUUID() + SEGMENT_SUFFIX;
+    }
+
+    /**
+     * Segment files, their deletes files and the temporary files of interrupted writes.
+     */
+    private static boolean isIndexFile(Path file) {
+        String name = file.getFileName().toString();
+        return Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+                && (name.startsWith(SEGMENT_PREFIX) || name.equals(SearchCheckpoint.FILE_NAME + ".tmp"));
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}, it is removed the next time the index is opened", file);
+        }
+    }
+
+    private void removeInternal(String id) {
+        for (SegmentState state : segments) {
+            int doc = state.liveOrdinalOf(id);
+            if (doc >= 0) {
+                state.deleted.set(doc);
+                liveDocs--;
+                totalLength -= state.segment.docLength(doc);
+                if (state.name != null) {
+                    deletesChanged = true;
+                }
+            }
+        }
+        int bufferDeletes = buffer.deleted.cardinality();
+        if (directory == null && bufferDeletes >= MIN_DELETES_TO_COMPACT
+                && bufferDeletes > buffer.segment.docCount() - bufferDeletes) {
+            SegmentState compacted = new SegmentState(((MemorySegment) buffer.segment).compact(buffer.deleted), null);
+            segments.set(segments.indexOf(buffer), compacted);
+            buffer = compacted;
+        }
+    }
+
+    /**
+     * Collects the ids of the existing notes, see {@link #reconcile()}.
+     */
+    public class Reconciliation implements Consumer<String> {
+        private final List<SegmentState> states;
+        private final List<BitSet> seen = new ArrayList<>();
+
+        private Reconciliation(List<SegmentState> states) {
+            this.states = states;
+            for (int i = 0; i < states.size(); i++) {
+                seen.add(new BitSet());
+            }
+        }
+
+        @Override
+        public void accept(String id) {
+            for (int i = 0; i < states.size(); i++) {
+                int doc = states.get(i).segment.ordinalOf(id);
+                if (doc >= 0) {
+                    seen.get(i).set(doc);
+                }
+            }
+        }
+
+        /**
+         * Deletes the docs whose id was not accepted.
+         *
+         * @return the number of deleted docs
+         */
+        public int run() {
+            int removed = 0;
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < states.size(); i++) {
+                    SegmentState state = states.get(i);
+                    if (!segments.contains(state)) {
+                        continue;
+                    }
+                    for (int doc = 0; doc < state.segment.docCount(); doc++) {
+                        if (!seen.get(i).get(doc) && !state.deleted.get(doc)) {
+                            state.deleted.set(doc);
+                            liveDocs--;
+                            totalLength -= state.segment.docLength(doc);
+                            deletesChanged = true;
+                            removed++;
+                        }
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return removed;
+        }
+    }
+
+    private static class SegmentState {
+        private final Segment segment;
+        // file name, null for the memory segment
+        private final String name;
+        private BitSet deleted = new BitSet();
+
+        private SegmentState(Segment segment, String name) {
+            this.segment = segment;
+            this.name = name;
+        }
+
+        private int liveOrdinalOf(String id) {
+            int doc = segment.ordinalOf(id);
+            return doc >= 0 && !deleted.get(doc) ? doc : -1;
+        }
+
+        private int liveFrequency(String term) {
+            PostingsCursor cursor = segment.postings(term);
+            int frequency = 0;
+            while (cursor != null && cursor.next()) {
+                if (!deleted.get(cursor.doc())) {
+                    frequency++;
+                }
+            }
+            return frequency;
+        }
+
+        /**
+         * Marks the docs that were deleted from the source after its snapshot was written here.
+         */
+        private void carryDeletes(SegmentState source, BitSet snapshot, int[] remap) {
+            for (int doc = source.deleted.nextSetBit(0); doc >= 0; doc = source.deleted.nextSetBit(doc + 1)) {
+                if (!snapshot.get(doc) && remap[doc] >= 0) {
+                    deleted.set(remap[doc]);
+                }
+            }
+        }
+    }
+
+    private record ScoredDoc(int segment, int doc, float score) {
+    }
+}
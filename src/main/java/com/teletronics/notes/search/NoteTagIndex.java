@@ -0,0 +1,201 @@
+package com.teletronics.notes.search;
+
+import com.teletronics.notes.models.Tag;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmaps of the notes carrying each {@link Tag}. A note gets the next ordinal when it is first indexed,
+ * so once the index is built from the notes sorted by creation date the ordinals follow the creation
+ * order and the newest notes are read from the end of the bitmaps. Ordinals of deleted notes are not
+ * reused, which would break that order; the live notes are renumbered instead once most ordinals are
+ * deleted.
+ */
+@Component
+public class NoteTagIndex {
+    private static final Tag[] TAGS = Tag.values();
+    // fewer deleted ordinals are not worth renumbering for
+    static final int MIN_COMPACTED_ORDINALS = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // note id of each ordinal, null once deleted
+    private List<String> ids = new ArrayList<>();
+    private final RoaringBitmap[] tagged = new RoaringBitmap[TAGS.length];
+    private RoaringBitmap all = new RoaringBitmap();
+
+    public NoteTagIndex() {
+        for (int i = 0; i < tagged.length; i++) {
+            tagged[i] = new RoaringBitmap();
+        }
+    }
+
+    /**
+     * Indexes the tags of a note, replacing the previous ones. A null set keeps the tags of a note that is
+     * indexed already, as updates only set the tags when some are given, and means no tags for a new note.
+     */
+    public void index(String id, Set<Tag> tags) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            if(ordinal == null) {
+                ordinal = ids.size();
+                ordinals.put(id, ordinal);
+                ids.add(id);
+                all.add(ordinal);
+            } else if(tags == null) {
+                return;
+            }
+            for (Tag tag : TAGS) {
+                if(tags != null && tags.contains(tag)) {
+                    tagged[tag.ordinal()].add(ordinal);
+                } else {
+                    tagged[tag.ordinal()].remove(ordinal);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(id);
+            if(ordinal == null) {
+                return;
+            }
+            ids.set(ordinal, null);
+            all.remove(ordinal);
+            for (RoaringBitmap bitmap : tagged) {
+                bitmap.remove(ordinal);
+            }
+            int deleted = ids.size() - ordinals.size();
+            if(deleted >= MIN_COMPACTED_ORDINALS && deleted > ordinals.size()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every note, before the index is built again.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            ids = new ArrayList<>();
+            all = new RoaringBitmap();
+            for (int i = 0; i < tagged.length; i++) {
+                tagged[i] = new RoaringBitmap();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // gives the live notes consecutive ordinals in the same order, called with the write lock held
+    private void compact() {
+        List<String> compactedIds = new ArrayList<>(ordinals.size());
+        RoaringBitmap[] compactedTagged = new RoaringBitmap[tagged.length];
+        for (int i = 0; i < tagged.length; i++) {
+            compactedTagged[i] = new RoaringBitmap();
+        }
+        for (int ordinal : all) {
+            int compacted = compactedIds.size();
+            String id = ids.get(ordinal);
+            compactedIds.add(id);
+            ordinals.put(id, compacted);
+            for (int i = 0; i < tagged.length; i++) {
+                if(tagged[i].contains(ordinal)) {
+                    compactedTagged[i].add(compacted);
+                }
+            }
+        }
+        ids = compactedIds;
+        all = new RoaringBitmap();
+        all.add(0L, compactedIds.size());
+        for (int i = 0; i < tagged.length; i++) {
+            compactedTagged[i].runOptimize();
+            tagged[i] = compactedTagged[i];
+        }
+    }
+
+    /**
+     * Ordinals given so far, deleted ones included.
+     */
+    int ordinalCount() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the notes matching the expression, newest first, and how many match.
+     */
+    public SearchHits find(TagExpression expression, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matching = expression.evaluate(tagged, all);
+            long total = matching.getLongCardinality();
+            if(offset >= total || limit <= 0) {
+                return new SearchHits(List.of(), total);
+            }
+            List<String> page = new ArrayList<>((int) Math.min(limit, total - offset));
+            long ordinal = matching.select((int) (total - 1 - offset));
+            while (ordinal >= 0 && page.size() < limit) {
+                page.add(ids.get((int) ordinal));
+                ordinal = ordinal == 0 ? -1 : matching.previousValue((int) ordinal - 1);
+            }
+            return new SearchHits(page, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<Tag, Long> counts() {
+        lock.readLock().lock();
+        try {
+            Map<Tag, Long> counts = new EnumMap<>(Tag.class);
+            for (Tag tag : TAGS) {
+                counts.put(tag, tagged[tag.ordinal()].getLongCardinality());
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the bitmaps once a build has added all the notes.
+     */
+    public void optimize() {
+        lock.writeLock().lock();
+        try {
+            all.runOptimize();
+            for (RoaringBitmap bitmap : tagged) {
+                bitmap.runOptimize();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
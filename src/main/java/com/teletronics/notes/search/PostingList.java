@@ -0,0 +1,56 @@
+package com.teletronics.notes.search;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Append only list of (doc ordinal, term frequency) pairs. Ordinals are added in increasing order and
+ * stored as variable length deltas, frequencies as variable length ints. Segment files store the
+ * same bytes.
+ */
+class PostingList {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int size;
+    private int lastDoc = -1;
+
+    void add(int doc, int freq) {
+        ensureCapacity(10);
+        length = writeVInt(data, length, doc - lastDoc);
+        length = writeVInt(data, length, freq);
+        lastDoc = doc;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int length() {
+        return length;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    PostingsCursor cursor() {
+        return new PostingsCursor(ByteBuffer.wrap(data), 0, length);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length << 1, length + extra));
+        }
+    }
+
+    static int writeVInt(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+}
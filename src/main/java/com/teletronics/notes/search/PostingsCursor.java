@@ -0,0 +1,55 @@
+package com.teletronics.notes.search;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a posting list encoded by {@link PostingList}, either from a heap array or straight from a
+ * mapped segment file. Only absolute reads are used, so one buffer can back any number of cursors.
+ */
+class PostingsCursor {
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private int position;
+    private int doc = -1;
+    private int freq;
+
+    PostingsCursor(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Moves to the next posting, returns false once the list is exhausted.
+     */
+    boolean next() {
+        if (position >= end) {
+            doc = Integer.MAX_VALUE;
+            return false;
+        }
+        doc += readVInt();
+        freq = readVInt();
+        return true;
+    }
+
+    int doc() {
+        return doc;
+    }
+
+    int freq() {
+        return freq;
+    }
+
+    private int readVInt() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,60 @@
+package com.teletronics.notes.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Last durable state of an index directory: its segments, the generation of their deletes files and
+ * the last modified date of the newest note that is in those segments.
+ */
+record SearchCheckpoint(long generation, List<String> segments, LocalDateTime watermark) {
+
+    static final String FILE_NAME = "checkpoint";
+
+    static Optional<SearchCheckpoint> read(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        }
+        String segments = properties.getProperty("segments", "");
+        String watermark = properties.getProperty("watermark", "");
+        return Optional.of(new SearchCheckpoint(
+                Long.parseLong(properties.getProperty("generation")),
+                segments.isEmpty() ? List.of() : Arrays.asList(segments.split(",")),
+                watermark.isEmpty() ? null : LocalDateTime.parse(watermark)));
+    }
+
+    void write(Path directory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("generation", Long.toString(generation));
+        properties.setProperty("segments", String.join(",", segments));
+        properties.setProperty("watermark", watermark == null ? "" : watermark.toString());
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporary)) {
+            properties.store(output, null);
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(FILE_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static String deletesFileName(String segment, long generation) {
+        return segment + "." + generation + ".del";
+    }
+}
@@ -0,0 +1,6 @@
+package com.teletronics.notes.search;
+
+import java.util.List;
+
+public record SearchHits(List<String> ids, long total) {
+}
@@ -0,0 +1,35 @@
+package com.teletronics.notes.search;
+
+import java.util.Iterator;
+
+/**
+ * Part of the search index. Docs are numbered from zero, an id is present at most once.
+ */
+interface Segment {
+
+    int docCount();
+
+    String docId(int doc);
+
+    int docLength(int doc);
+
+    /**
+     * @return the ordinal of the doc with the given id, or -1 when it is not in this segment
+     */
+    int ordinalOf(String id);
+
+    /**
+     * @return a cursor on the postings of the term, or null when no doc contains it
+     */
+    PostingsCursor postings(String term);
+
+    /**
+     * @return the terms of this segment in ascending order
+     */
+    Iterator<String> terms();
+
+    /**
+     * @return the size of the segment in bytes, used to pick the segments to merge
+     */
+    long sizeInBytes();
+}
@@ -0,0 +1,191 @@
+package com.teletronics.notes.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Writes segments into one immutable file, laid out as:
+ * <pre>
+ * postings     varint encoded posting lists, one after the other in term order
+ * doc lengths  int per doc
+ * id offsets   int per doc + 1, into the id bytes
+ * id bytes     UTF-8 ids in doc order
+ * sorted ids   int per doc, doc ordinals in id order
+ * term offsets int per term + 1, into the term bytes
+ * term bytes   UTF-8 terms in ascending order
+ * term entries postings offset, postings length, doc frequency and padding per term
+ * footer       magic, version, doc and term counts and the offset of every section
+ * </pre>
+ */
+class SegmentWriter {
+
+    static final int MAGIC = 0x4E534547;
+    static final int VERSION = 1;
+    static final int FOOTER_SIZE = 44;
+    static final int TERM_ENTRY_SIZE = 16;
+
+    private SegmentWriter() {
+    }
+
+    /**
+     * Writes the docs of the sources that are not deleted into one segment file. Docs keep their
+     * relative order, so posting lists stay sorted without being decoded.
+     *
+     * @return for every source, the new ordinal of each of its docs, or -1 for deleted docs
+     */
+    static int[][] write(List<? extends Segment> sources, List<BitSet> deleted, Path file) throws IOException {
+        int[][] remap = new int[sources.size()][];
+        List<String> ids = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        for (int s = 0; s < sources.size(); s++) {
+            Segment source = sources.get(s);
+            remap[s] = new int[source.docCount()];
+            for (int doc = 0; doc < source.docCount(); doc++) {
+                if (deleted.get(s).get(doc)) {
+                    remap[s][doc] = -1;
+                } else {
+                    remap[s][doc] = ids.size();
+                    ids.add(source.docId(doc));
+                    lengths.add(source.docLength(doc));
+                }
+            }
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+
+            List<byte[]> terms = new ArrayList<>();
+            List<int[]> entries = new ArrayList<>();
+            PeekingIterator[] termIterators = new PeekingIterator[sources.size()];
+            PriorityQueue<PeekingIterator> queue = new PriorityQueue<>(Comparator.comparing(PeekingIterator::peek));
+            for (int s = 0; s < sources.size(); s++) {
+                termIterators[s] = new PeekingIterator(s, sources.get(s).terms());
+                if (termIterators[s].peek() != null) {
+                    queue.add(termIterators[s]);
+                }
+            }
+            while (!queue.isEmpty()) {
+                String term = queue.peek().peek();
+                PostingList merged = new PostingList();
+                while (!queue.isEmpty() && queue.peek().peek().equals(term)) {
+                    PeekingIterator iterator = queue.poll();
+                    PostingsCursor cursor = sources.get(iterator.source).postings(term);
+                    while (cursor.next()) {
+                        int doc = remap[iterator.source][cursor.doc()];
+                        if (doc >= 0) {
+                            merged.add(doc, cursor.freq());
+                        }
+                    }
+                    iterator.advance();
+                    if (iterator.peek() != null) {
+                        queue.add(iterator);
+                    }
+                }
+                if (merged.size() > 0) {
+                    entries.add(new int[]{output.size(), merged.length(), merged.size()});
+                    output.write(merged.data(), 0, merged.length());
+                    terms.add(term.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            int docLengthsOffset = output.size();
+            for (Integer length : lengths) {
+                output.writeInt(length);
+            }
+
+            List<byte[]> idBytes = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                idBytes.add(id.getBytes(StandardCharsets.UTF_8));
+            }
+            int idOffsetsOffset = writeOffsets(output, idBytes);
+            int idBytesOffset = writeBytes(output, idBytes);
+
+            int sortedIdsOffset = output.size();
+            Integer[] sortedIds = new Integer[ids.size()];
+            for (int doc = 0; doc < sortedIds.length; doc++) {
+                sortedIds[doc] = doc;
+            }
+            Arrays.sort(sortedIds, (o1, o2) -> Arrays.compareUnsigned(idBytes.get(o1), idBytes.get(o2)));
+            for (Integer doc : sortedIds) {
+                output.writeInt(doc);
+            }
+
+            int termOffsetsOffset = writeOffsets(output, terms);
+            int termBytesOffset = writeBytes(output, terms);
+
+            int termEntriesOffset = output.size();
+            for (int[] entry : entries) {
+                output.writeInt(entry[0]);
+                output.writeInt(entry[1]);
+                output.writeInt(entry[2]);
+                output.writeInt(0);
+            }
+
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(ids.size());
+            output.writeInt(terms.size());
+            output.writeInt(docLengthsOffset);
+            output.writeInt(idOffsetsOffset);
+            output.writeInt(idBytesOffset);
+            output.writeInt(sortedIdsOffset);
+            output.writeInt(termOffsetsOffset);
+            output.writeInt(termBytesOffset);
+            output.writeInt(termEntriesOffset);
+            if (output.size() == Integer.MAX_VALUE) {
+                throw new IOException("Search segment is larger than 2GB");
+            }
+            output.flush();
+            stream.getChannel().force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return remap;
+    }
+
+    private static int writeOffsets(DataOutputStream output, List<byte[]> values) throws IOException {
+        int offset = output.size();
+        int position = 0;
+        output.writeInt(position);
+        for (byte[] value : values) {
+            position += value.length;
+            output.writeInt(position);
+        }
+        return offset;
+    }
+
+    private static int writeBytes(DataOutputStream output, List<byte[]> values) throws IOException {
+        int offset = output.size();
+        for (byte[] value : values) {
+            output.write(value);
+        }
+        return offset;
+    }
+
+    private static class PeekingIterator {
+        private final int source;
+        private final Iterator<String> iterator;
+        private String next;
+
+        private PeekingIterator(int source, Iterator<String> iterator) {
+            this.source = source;
+            this.iterator = iterator;
+            advance();
+        }
+
+        private String peek() {
+            return next;
+        }
+
+        private void advance() {
+            next = iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.teletronics.notes.search;
+
+import com.teletronics.notes.exceptions.InvalidTagQueryException;
+import com.teletronics.notes.models.Tag;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Boolean expression over the note tags, such as {@code BUSINESS AND NOT (PERSONAL OR IMPORTANT)}.
+ * NOT binds tighter than AND, which binds tighter than OR. Operators and tags are case insensitive.
+ * <p>
+ * It is evaluated on the bitmaps of {@link NoteTagIndex}, or turned into a query on the tags field when
+ * the index cannot serve it.
+ */
+public sealed interface TagExpression {
+    int MAX_LENGTH = 1024;
+    int MAX_DEPTH = 32;
+
+    /**
+     * Notes matching the expression. The result may be one of the given bitmaps and must not be modified.
+     *
+     * @param tagged notes of each tag, by tag ordinal
+     * @param all all the notes
+     */
+    RoaringBitmap evaluate(RoaringBitmap[] tagged, RoaringBitmap all);
+
+    Criteria toCriteria();
+
+    static TagExpression parse(String expression) {
+        if(expression.length() > MAX_LENGTH) {
+            throw new InvalidTagQueryException("Tag query is longer than " + MAX_LENGTH + " characters");
+        }
+        return new Parser(expression).parse();
+    }
+
+    record Tagged(Tag tag) implements TagExpression {
+        @Override
+        public RoaringBitmap evaluate(RoaringBitmap[] tagged, RoaringBitmap all) {
+            return tagged[tag.ordinal()];
+        }
+
+        @Override
+        public Criteria toCriteria() {
+            return Criteria.where("tags").is(tag.name());
+        }
+    }
+
+    record Not(TagExpression operand) implements TagExpression {
+        @Override
+        public RoaringBitmap evaluate(RoaringBitmap[] tagged, RoaringBitmap all) {
+            return RoaringBitmap.andNot(all, operand.evaluate(tagged, all));
+        }
+
+        @Override
+        public Criteria toCriteria() {
+            return operand instanceof Tagged t
+                    ? Criteria.where("tags").ne(t.tag().name())
+                    : new Criteria().norOperator(operand.toCriteria());
+        }
+    }
+
+    record And(List<TagExpression> operands) implements TagExpression {
+        static TagExpression of(List<TagExpression> operands) {
+            return operands.size() == 1 ? operands.get(0) : new And(List.copyOf(operands));
+        }
+
+        /**
+         * Negated operands are subtracted from the intersection of the others rather than complemented.
+         */
+        @Override
+        public RoaringBitmap evaluate(RoaringBitmap[] tagged, RoaringBitmap all) {
+            List<RoaringBitmap> included = new ArrayList<>();
+            List<RoaringBitmap> excluded = new ArrayList<>();
+            for (TagExpression operand : operands) {
+                if(operand instanceof Not not) {
+                    excluded.add(not.operand().evaluate(tagged, all));
+                } else {
+                    included.add(operand.evaluate(tagged, all));
+                }
+            }
+            RoaringBitmap result = switch (included.size()) {
+                case 0 -> all;
+                case 1 -> included.get(0);
+                default -> FastAggregation.and(included.toArray(new RoaringBitmap[0]));
+            };
+            return excluded.isEmpty()
+                    ? result
+                    : RoaringBitmap.andNot(result, RoaringBitmap.or(excluded.iterator()));
+        }
+
+        @Override
+        public Criteria toCriteria() {
+            return new Criteria().andOperator(operands.stream().map(TagExpression::toCriteria).toList());
+        }
+    }
+
+    record Or(List<TagExpression> operands) implements TagExpression {
+        static TagExpression of(List<TagExpression> operands) {
+            return operands.size() == 1 ? operands.get(0) : new Or(List.copyOf(operands));
+        }
+
+        @Override
+        public RoaringBitmap evaluate(RoaringBitmap[] tagged, RoaringBitmap all) {
+            List<RoaringBitmap> bitmaps = new ArrayList<>(operands.size());
+            for (TagExpression operand : operands) {
+                bitmaps.add(operand.evaluate(tagged, all));
+            }
+            return RoaringBitmap.or(bitmaps.iterator());
+        }
+
+        @Override
+        public Criteria toCriteria() {
+            return new Criteria().orOperator(operands.stream().map(TagExpression::toCriteria).toList());
+        }
+    }
+
+    final class Parser {
+        private final List<String> tokens = new ArrayList<>();
+        private int position;
+        private int depth;
+
+        private Parser(String expression) {
+            int start = -1;
+            for (int i = 0; i <= expression.length(); i++) {
+                char c = i < expression.length() ? expression.charAt(i) : ' ';
+                if(Character.isWhitespace(c) || c == '(' || c == ')') {
+                    if(start >= 0) {
+                        tokens.add(expression.substring(start, i).toUpperCase(Locale.ROOT));
+                        start = -1;
+                    }
+                    if(c == '(' || c == ')') {
+                        tokens.add(String.valueOf(c));
+                    }
+                } else if(start < 0) {
+                    start = i;
+                }
+            }
+        }
+
+        private TagExpression parse() {
+            if(tokens.isEmpty()) {
+                throw new InvalidTagQueryException("Tag query is empty");
+            }
+            TagExpression expression = or();
+            if(position < tokens.size()) {
+                throw new InvalidTagQueryException("Unexpected '" + tokens.get(position) + "' in tag query");
+            }
+            return expression;
+        }
+
+        private TagExpression or() {
+            List<TagExpression> operands = new ArrayList<>();
+            operands.add(and());
+            while (accept("OR")) {
+                operands.add(and());
+            }
+            return Or.of(operands);
+        }
+
+        private TagExpression and() {
+            List<TagExpression> operands = new ArrayList<>();
+            operands.add(unary());
+            while (accept("AND")) {
+                operands.add(unary());
+            }
+            return And.of(operands);
+        }
+
+        private TagExpression unary() {
+            if(++depth > MAX_DEPTH) {
+                throw new InvalidTagQueryException("Tag query is nested deeper than " + MAX_DEPTH + " levels");
+            }
+            try {
+                if(accept("NOT")) {
+                    TagExpression operand = unary();
+                    return operand instanceof Not not ? not.operand() : new Not(operand);
+                }
+                if(accept("(")) {
+                    TagExpression expression = or();
+                    if(!accept(")")) {
+                        throw new InvalidTagQueryException("Missing ')' in tag query");
+                    }
+                    return expression;
+                }
+                return tag();
+            } finally {
+                depth--;
+            }
+        }
+
+        private TagExpression tag() {
+            if(position == tokens.size()) {
+                throw new InvalidTagQueryException("Tag query ends with an operator");
+            }
+            String token = tokens.get(position++);
+            try {
+                return new Tagged(Tag.valueOf(token));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidTagQueryException("Unknown tag '" + token + "' in tag query");
+            }
+        }
+
+        private boolean accept(String token) {
+            if(position < tokens.size() && tokens.get(position).equals(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.teletronics.notes.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.teletronics.notes.configs.NoteTextCompression;
+import com.teletronics.notes.dtos.BulkItemResultDto;
+import com.teletronics.notes.dtos.BulkOperationDto;
+import com.teletronics.notes.dtos.BulkResponseDto;
+import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.utils.TextHash;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Applies a stream of create, update and delete operations, one JSON object per line. Operations are
+ * validated one by one and written in unordered bulk batches, every line gets its own result so a bad
+ * line does not fail the others. A batch never holds two operations on the same note, so the operations
+ * on a note are applied in the order of their lines. The writes are blocking, on the reactive stack
+ * {@link ReactiveNoteService#bulk} runs them on the blocking pool.
+ */
+@Service
+@Timed("notes.service")
+@Slf4j
+public class NoteBulkService {
+    static final String CREATE = "create";
+    static final String UPDATE = "update";
+    static final String DELETE = "delete";
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteTextCompression noteTextCompression;
+
+    @Autowired
+    private NoteMapper noteMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${notes.bulk.batch-size:1000}")
+    private int batchSize;
+
+    private record PendingOperation(BulkItemResultDto item, Note note) {
+    }
+
+    public BulkResponseDto process(Reader operations) throws IOException {
+        try {
+            return process(new BufferedReader(operations).lines().iterator());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Same as {@link #process(Reader)} on the lines already split, blank ones included so the results
+     * keep the line numbers of the request.
+     */
+    public BulkResponseDto process(Iterator<String> lines) {
+        List<BulkItemResultDto> items = new ArrayList<>();
+        List<PendingOperation> batch = new ArrayList<>();
+        Set<String> batchIds = new HashSet<>();
+        int lineNumber = 0;
+        while(lines.hasNext()) {
+            String line = lines.next();
+            lineNumber++;
+            if(!StringUtils.hasText(line)) {
+                continue;
+            }
+            BulkItemResultDto item = new BulkItemResultDto();
+            item.setLine(lineNumber);
+            items.add(item);
+            Note note = parse(line, item);
+            if(note == null) {
+                continue;
+            }
+            // the operations of an unordered batch can be applied in any order
+            if(!batchIds.add(note.getId())) {
+                write(batch);
+                batch.clear();
+                batchIds.clear();
+                batchIds.add(note.getId());
+            }
+            batch.add(new PendingOperation(item, note));
+            if(batch.size() >= batchSize) {
+                write(batch);
+                batch.clear();
+                batchIds.clear();
+            }
+        }
+        write(batch);
+        boolean errors = items.stream().anyMatch(item -> item.getError() != null);
+        return new BulkResponseDto(errors, items);
+    }
+
+    private Note parse(String line, BulkItemResultDto item) {
+        BulkOperationDto operation;
+        try {
+            operation = objectMapper.readValue(line, BulkOperationDto.class);
+        } catch (JsonProcessingException e) {
+            return fail(item, HttpStatus.BAD_REQUEST, "Malformed operation");
+        }
+        item.setOp(operation.getOp());
+        item.setId(operation.getId());
+        if(!CREATE.equals(operation.getOp()) && !UPDATE.equals(operation.getOp()) && !DELETE.equals(operation.getOp())) {
+            return fail(item, HttpStatus.BAD_REQUEST, "Operation should be create, update or delete");
+        }
+        if(!CREATE.equals(operation.getOp()) && !StringUtils.hasText(operation.getId())) {
+            return fail(item, HttpStatus.BAD_REQUEST, "Id is required");
+        }
+        if(DELETE.equals(operation.getOp())) {
+            Note note = new Note();
+            note.setId(operation.getId());
+            return note;
+        }
+        NoteDto noteDto = operation.getNote();
+        if(noteDto == null) {
+            return fail(item, HttpStatus.BAD_REQUEST, "Note is required");
+        }
+        Set<ConstraintViolation<NoteDto>> violations = validator.validate(noteDto);
+        if(!violations.isEmpty()) {
+            return fail(item, HttpStatus.BAD_REQUEST, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        Note note = noteMapper.mapToNote(null, noteDto);
+        note.setStats(noteService.findUniqueOccurrence(note.getText()));
+        note.setTextHash(TextHash.of(note.getText()));
+        LocalDateTime now = LocalDateTime.now();
+        if(CREATE.equals(operation.getOp())) {
+            // the id is assigned here so it can be reported back
+            note.setId(new ObjectId().toHexString());
+            item.setId(note.getId());
+            note.setCreatedDate(now);
+            note.setVersion(0L);
+        } else {
+            note.setId(operation.getId());
+            // the version the update expects, the note gets the next one once written
+            note.setVersion(noteDto.getVersion());
+        }
+        note.setLastModifiedDate(now);
+        return note;
+    }
+
+    private void write(List<PendingOperation> batch) {
+        if(batch.isEmpty()) {
+            return;
+        }
+        // the bulk result only counts the deleted notes, so the notes to delete are looked up first
+        Set<String> deletableIds = findExistingIds(idsOf(batch, DELETE));
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+        List<PendingOperation> sent = new ArrayList<>(batch.size());
+        for(PendingOperation operation : batch) {
+            Note note = operation.note();
+            if(CREATE.equals(operation.item().getOp())) {
+                bulkOperations.insert(note);
+            } else if(UPDATE.equals(operation.item().getOp())) {
+                bulkOperations.updateOne(NoteService.updateQuery(note.getId(), note.getVersion()),
+                        NoteService.toUpdate(note, noteTextCompression));
+            } else if(deletableIds.contains(note.getId())) {
+                bulkOperations.remove(Query.query(where("id").is(note.getId())));
+            } else {
+                fail(operation.item(), HttpStatus.NOT_FOUND, "Note not found for the given id");
+                continue;
+            }
+            sent.add(operation);
+        }
+        if(sent.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> failed = new HashSet<>();
+        BulkWriteResult result;
+        try {
+            result = bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            result = e.getResult();
+            for(BulkWriteError error : e.getErrors()) {
+                failed.add(error.getIndex());
+                fail(sent.get(error.getIndex()).item(),
+                        error.getCode() == DUPLICATE_KEY ? HttpStatus.CONFLICT : HttpStatus.INTERNAL_SERVER_ERROR,
+                        error.getMessage());
+            }
+        } catch (Exception e) {
+            log.error("Bulk write of {} operations failed", sent.size(), e);
+            sent.forEach(operation -> fail(operation.item(), HttpStatus.INTERNAL_SERVER_ERROR, "Error in writing the batch"));
+            return;
+        }
+
+        List<PendingOperation> written = new ArrayList<>(sent.size());
+        for(int i = 0; i < sent.size(); i++) {
+            if(!failed.contains(i)) {
+                written.add(sent.get(i));
+            }
+        }
+        Map<String, HttpStatus> missedUpdates = findMissedUpdates(written, result);
+        for(PendingOperation operation : written) {
+            BulkItemResultDto item = operation.item();
+            Note note = operation.note();
+            switch (item.getOp()) {
+                case CREATE -> {
+                    item.setStatus(HttpStatus.CREATED.value());
+                    eventPublisher.publishEvent(new NoteSavedEvent(note));
+                }
+                case UPDATE -> {
+                    HttpStatus missed = missedUpdates.get(note.getId());
+                    if(missed == HttpStatus.NOT_FOUND) {
+                        fail(item, missed, "Note not found for the given id");
+                        continue;
+                    }
+                    if(missed == HttpStatus.CONFLICT) {
+                        fail(item, missed, "Note was modified since version " + note.getVersion());
+                        continue;
+                    }
+                    note.setVersion(note.getVersion() == null ? null : note.getVersion() + 1);
+                    item.setStatus(HttpStatus.OK.value());
+                    eventPublisher.publishEvent(new NoteSavedEvent(note));
+                }
+                default -> {
+                    item.setStatus(HttpStatus.NO_CONTENT.value());
+                    eventPublisher.publishEvent(new NoteDeletedEvent(note.getId()));
+                }
+            }
+        }
+    }
+
+    /**
+     * The updates that matched no note, 404 when it does not exist and 409 when it does not hold the update.
+     * Only looked up when the bulk result matched fewer notes than updates.
+     */
+    private Map<String, HttpStatus> findMissedUpdates(List<PendingOperation> written, BulkWriteResult result) {
+        List<Note> updates = written.stream()
+                .filter(operation -> UPDATE.equals(operation.item().getOp()))
+                .map(PendingOperation::note)
+                .toList();
+        if(result == null || !result.wasAcknowledged() || result.getMatchedCount() >= updates.size()) {
+            return Map.of();
+        }
+        Query query = Query.query(where("id").in(updates.stream().map(Note::getId).toList()));
+        query.fields().include("id", "version", "textHash", "lastModifiedDate");
+        Map<String, Note> storedNotes = mongoTemplate.find(query, Note.class)
+                .stream()
+                .collect(Collectors.toMap(Note::getId, stored -> stored));
+        Map<String, HttpStatus> missed = new HashMap<>();
+        for(Note update : updates) {
+            Note stored = storedNotes.get(update.getId());
+            if(stored == null) {
+                missed.put(update.getId(), HttpStatus.NOT_FOUND);
+            } else if(update.getVersion() != null && !isWrittenBy(stored, update)) {
+                missed.put(update.getId(), HttpStatus.CONFLICT);
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Whether the stored note was written by the update. The next version alone is also what another writer
+     * updating from the same version leaves, so the text hash and modified date written must match too.
+     */
+    private static boolean isWrittenBy(Note stored, Note update) {
+        // dates are stored with millisecond precision
+        return stored.getVersion() != null && stored.getVersion() == update.getVersion() + 1
+                && Objects.equals(stored.getTextHash(), update.getTextHash())
+                && update.getLastModifiedDate().truncatedTo(ChronoUnit.MILLIS).equals(stored.getLastModifiedDate());
+    }
+
+    private static List<String> idsOf(List<PendingOperation> operations, String op) {
+        return operations.stream()
+                .filter(operation -> op.equals(operation.item().getOp()))
+                .map(operation -> operation.note().getId())
+                .toList();
+    }
+
+    private Set<String> findExistingIds(List<String> ids) {
+        if(ids.isEmpty()) {
+            return Set.of();
+        }
+        Query query = Query.query(where("id").in(ids));
+        query.fields().include("id");
+        return mongoTemplate.find(query, Note.class)
+                .stream()
+                .map(Note::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private static Note fail(BulkItemResultDto item, HttpStatus status, String error) {
+        item.setStatus(status.value());
+        item.setError(error);
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+package com.teletronics.notes.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Writes notes as one JSON object per line. Notes are read through a server side cursor in batches
+ * and written as soon as they are mapped, so memory does not depend on the number of notes.
+ */
+@Service
+@Profile("!reactive")
+@Timed("notes.service")
+public class NoteExportService {
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteMapper noteMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${notes.export.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * @return the number of notes written
+     */
+    public long export(Set<String> tags, LocalDateTime modifiedSince, OutputStream out) throws IOException {
+        // lines are separated by hand, and the output buffer decides when to send instead of every note
+        ObjectWriter writer = objectMapper.writerFor(NoteDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+        try (Stream<Note> notes = mongoTemplate.stream(exportQuery(tags, modifiedSince, batchSize), Note.class);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            Iterator<Note> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, toExportDto(noteMapper, iterator.next()));
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Exported notes also have their dates.
+     */
+    static NoteDto toExportDto(NoteMapper noteMapper, Note note) {
+        NoteDto noteDto = noteMapper.mapFromNote(note);
+        noteDto.setCreatedDate(note.getCreatedDate());
+        noteDto.setLastModifiedDate(note.getLastModifiedDate());
+        return noteDto;
+    }
+
+    // no sort, a sort on a large result would either need an index that matches the filter or be done in memory
+    static Query exportQuery(Set<String> tags, LocalDateTime modifiedSince, int batchSize) {
+        Query query = new Query();
+        if(!CollectionUtils.isEmpty(tags)) {
+            query.addCriteria(where("tags").in(tags));
+        }
+        if(modifiedSince != null) {
+            query.addCriteria(where("lastModifiedDate").gte(modifiedSince));
+        }
+        query.fields().exclude("stats");
+        return query.cursorBatchSize(batchSize);
+    }
+}
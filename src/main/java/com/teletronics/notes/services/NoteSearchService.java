@@ -0,0 +1,240 @@
+package com.teletronics.notes.services;
+
+import com.teletronics.notes.events.NoteChangesLostEvent;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.exceptions.SearchUnavailableException;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.repositories.NoteRepository;
+import com.teletronics.notes.search.NoteSearchIndex;
+import com.teletronics.notes.search.SearchHits;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@Timed("notes.service")
+@Slf4j
+public class NoteSearchService {
+    @Autowired
+    private NoteSearchIndex noteSearchIndex;
+    @Autowired
+    private NoteRepository noteRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(5);
+    private static final Duration MAX_BUILD_RETRY_DELAY = Duration.ofMinutes(5);
+
+    @Value("${notes.search.build-on-startup:true}")
+    private boolean buildOnStartup;
+
+    @Value("${notes.search.index-dir:}")
+    private String indexDir;
+
+    @Value("${notes.search.flush-interval:30s}")
+    private Duration flushInterval;
+
+    @Value("${notes.search.flush-docs:10000}")
+    private int flushDocs;
+
+    // first wait before a failed build is retried, doubled after each failure
+    @Value("${notes.search.build-retry-delay:5s}")
+    private Duration buildRetryDelay;
+
+    private Optional<LocalDateTime> checkpoint = Optional.empty();
+
+    private volatile boolean ready;
+    // builds run one at a time
+    private final Object buildLock = new Object();
+    // notes changed while the index is being built, the build must not overwrite them with older data
+    private final Set<String> changedDuringBuild = Collections.synchronizedSet(new HashSet<>());
+
+    public Page<NoteProjection> search(String query, Pageable pageable) {
+        SearchHits hits = findHits(query, pageable);
+        return toPage(hits, noteRepository.findByIdIn(hits.ids()), pageable);
+    }
+
+    public SearchHits findHits(String query, Pageable pageable) {
+        if(!ready) {
+            throw new SearchUnavailableException("Search index is not ready yet");
+        }
+        return noteSearchIndex.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+    }
+
+    /**
+     * Puts the notes loaded for the hits back in the rank order, notes deleted since the search are left out.
+     */
+    public static Page<NoteProjection> toPage(SearchHits hits, Collection<NoteProjection> projections, Pageable pageable) {
+        Map<String, NoteProjection> notes = projections
+                .stream()
+                .collect(Collectors.toMap(NoteProjection::getId, Function.identity()));
+        List<NoteProjection> content = hits.ids()
+                .stream()
+                .map(notes::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, hits.total());
+    }
+
+    @PostConstruct
+    public void openIndex() throws IOException {
+        if(StringUtils.hasText(indexDir)) {
+            checkpoint = noteSearchIndex.open(Path.of(indexDir));
+        }
+    }
+
+    @PreDestroy
+    public void closeIndex() {
+        noteSearchIndex.close();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if(!buildOnStartup) {
+            if(StringUtils.hasText(indexDir)) {
+                noteSearchIndex.startMaintenance(flushInterval, flushDocs);
+            }
+            ready = true;
+            return;
+        }
+        Thread builder = new Thread(this::buildUntilDone, "search-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Runs after the note is written, so a failure is logged rather than failing the request.
+     */
+    @EventListener
+    public void onNoteSaved(NoteSavedEvent event) {
+        Note note = event.note();
+        if(!ready) {
+            changedDuringBuild.add(note.getId());
+        }
+        try {
+            noteSearchIndex.index(note.getId(), note.getTitle(), note.getText(), note.getLastModifiedDate());
+        } catch (Exception e) {
+            log.error("Error in indexing the note {} for search", note.getId(), e);
+        }
+    }
+
+    @EventListener
+    public void onNoteDeleted(NoteDeletedEvent event) {
+        if(!ready) {
+            changedDuringBuild.add(event.id());
+        }
+        try {
+            noteSearchIndex.remove(event.id());
+        } catch (Exception e) {
+            log.error("Error in removing the note {} from the search index", event.id(), e);
+        }
+    }
+
+    /**
+     * The changes of other instances were lost, so the index is built again from every note.
+     */
+    @EventListener
+    public void onNoteChangesLost(NoteChangesLostEvent event) {
+        Thread builder = new Thread(this::rebuild, "search-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void rebuild() {
+        synchronized (buildLock) {
+            // notes saved from here on are read by the build, the ones saved once it is not ready are kept
+            noteSearchIndex.clear();
+            checkpoint = Optional.empty();
+            ready = false;
+            buildUntilDone();
+        }
+    }
+
+    /**
+     * Builds the index, retrying after a failure with a doubling delay. Search answers 503 meanwhile.
+     */
+    void buildUntilDone() {
+        synchronized (buildLock) {
+            Duration delay = buildRetryDelay;
+            while (!build()) {
+                log.warn("Retrying the search index build in {}", delay);
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                Duration doubled = delay.multipliedBy(2);
+                delay = doubled.compareTo(MAX_BUILD_RETRY_DELAY) > 0 ? MAX_BUILD_RETRY_DELAY : doubled;
+            }
+        }
+    }
+
+    boolean build() {
+        long start = System.currentTimeMillis();
+        Query query = new Query();
+        query.fields().include("title", "text", "lastModifiedDate");
+        try {
+            if(checkpoint.isPresent()) {
+                removeDeletedNotes();
+                query.addCriteria(Criteria.where("lastModifiedDate").gte(checkpoint.get().minus(CATCH_UP_MARGIN)));
+            }
+            try (Stream<Note> notes = mongoTemplate.stream(query, Note.class)) {
+                notes.filter(note -> !changedDuringBuild.contains(note.getId()))
+                        .forEach(note -> noteSearchIndex.index(note.getId(), note.getTitle(), note.getText(), note.getLastModifiedDate()));
+            }
+            if(StringUtils.hasText(indexDir)) {
+                noteSearchIndex.startMaintenance(flushInterval, flushDocs);
+            }
+            ready = true;
+            changedDuringBuild.clear();
+            log.info("Search index built with {} notes in {} ms", noteSearchIndex.size(), System.currentTimeMillis() - start);
+            return true;
+        } catch (Exception e) {
+            log.error("Error in building the search index", e);
+            return false;
+        }
+    }
+
+    private void removeDeletedNotes() {
+        NoteSearchIndex.Reconciliation reconciliation = noteSearchIndex.reconcile();
+        Query query = new Query();
+        query.fields().include("_id");
+        try (Stream<Document> ids = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(Note.class))) {
+            ids.forEach(id -> reconciliation.accept(id.get("_id").toString()));
+        }
+        int removed = reconciliation.run();
+        if(removed > 0) {
+            log.info("Removed {} notes deleted since the last search index checkpoint", removed);
+        }
+    }
+}
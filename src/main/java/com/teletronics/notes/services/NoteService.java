@@ -2,26 +2,93 @@ package com.teletronics.notes.services;
 
 
 import com.teletronics.notes.comparators.DescendingOrderIgnoringCaseComparator;
+import com.teletronics.notes.configs.CacheConfig;
+import com.teletronics.notes.configs.NoteMetrics;
+import com.teletronics.notes.configs.NoteTextCompression;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
 import com.teletronics.notes.exceptions.ResourceNotFoundException;
+import com.teletronics.notes.exceptions.VersionConflictException;
 import com.teletronics.notes.models.Note;
 import com.teletronics.notes.repositories.NoteProjection;
 import com.teletronics.notes.repositories.NoteRepository;
-import com.teletronics.notes.utils.StringProcessingUtils;
+import com.teletronics.notes.repositories.NoteTextProjection;
+import com.teletronics.notes.repositories.NoteVersionProjection;
+import com.teletronics.notes.repositories.StoredNoteText;
+import com.teletronics.notes.utils.IncrementalWordStats;
+import com.teletronics.notes.utils.NoteCursor;
+import com.teletronics.notes.utils.ParallelWordCountTask;
+import com.teletronics.notes.utils.TextHash;
+import com.teletronics.notes.utils.WordFrequencyCounter;
+import io.micrometer.core.annotation.Timed;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
+@Timed("notes.service")
 public class NoteService {
+    private static final int STATS_CHUNK_SIZE = 8192;
+
     @Autowired
     private NoteRepository noteRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private NoteMetrics noteMetrics;
+
+    @Autowired
+    private NoteTextCompression noteTextCompression;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private NotesVersionCache notesVersionCache;
+
+    @Value("${notes.stats.max-unique-terms:1000000}")
+    private int maxUniqueTerms;
+
+    @Value("${notes.stats.parallel-threshold:4194304}")
+    private int parallelThreshold;
+
+    @Value("${notes.stats.parallel-segment-size:1048576}")
+    private int parallelSegmentSize;
+
+    @Value("${notes.stats.incremental-max-change:0.2}")
+    private double incrementalStatsMaxChange;
+
     public Page<NoteProjection> findAll(Set<String> tags, Pageable pageable) {
         try {
             if(CollectionUtils.isEmpty(tags)){
@@ -29,17 +96,55 @@ public class NoteService {
             }
             return noteRepository.findByTagsIn(tags, pageable);
         } catch(Exception e) {
+            noteMetrics.recordError("findAll", e);
             throw new RuntimeException("Error in getting notes page");
         }
     }
 
+    /**
+     * Slice after the cursor. The notes the cursor skips are read and dropped, they are only the notes that
+     * can not be seeked past, see {@link NoteCursor}.
+     */
+    public Slice<NoteProjection> findAllAfter(Set<String> tags, NoteCursor after, int pageSize) {
+        int skip = after == null ? 0 : after.skip();
+        Pageable pageable = PageRequest.of(0, skip + pageSize, Sort.by(Sort.Direction.DESC, "createdDate", "id"));
+        try {
+            Slice<NoteProjection> slice;
+            if(after == null || !after.hasKey()) {
+                slice = CollectionUtils.isEmpty(tags)
+                        ? noteRepository.findSliceProjectedBy(pageable)
+                        : noteRepository.findSliceByTagsIn(tags, pageable);
+            } else {
+                slice = CollectionUtils.isEmpty(tags)
+                        ? noteRepository.findSliceAfter(after.createdDate(), after.id(), pageable)
+                        : noteRepository.findSliceByTagsInAfter(after.createdDate(), after.id(), tags, pageable);
+            }
+            return skip == 0 ? slice : skip(slice, skip, pageSize);
+        } catch(Exception e) {
+            noteMetrics.recordError("findAllAfter", e);
+            throw new RuntimeException("Error in getting notes page");
+        }
+    }
+
+    static Slice<NoteProjection> skip(Slice<NoteProjection> slice, int skip, int pageSize) {
+        List<NoteProjection> content = slice.getContent();
+        return new SliceImpl<>(content.subList(Math.min(skip, content.size()), content.size()),
+                PageRequest.of(0, pageSize), slice.hasNext());
+    }
+
     public Note save(Note note) {
+        if(note.getStats() == null) {
+            note.setStats(findUniqueOccurrence(note.getText()));
+        }
+        note.setTextHash(TextHash.of(note.getText()));
         try {
             note = noteRepository.save(note);
-            return note;
         } catch (Exception e) {
+            noteMetrics.recordError("save", e);
             throw new RuntimeException("Error in creating or updating the note");
         }
+        eventPublisher.publishEvent(new NoteSavedEvent(note));
+        return note;
     }
 
     public Note findById(String id) throws  Exception {
@@ -47,32 +152,220 @@ public class NoteService {
                     .orElseThrow(()-> new ResourceNotFoundException("Note not found for the given id"));
     }
 
-    public String getNoteText(String id) throws Exception {
-            Note note = findById(id);
-            return note.getText();
+    /**
+     * Text of a note as stored, a compressed text is cached compressed.
+     */
+    @Cacheable(cacheNames = CacheConfig.NOTE_TEXT_CACHE, sync = true)
+    public NoteTextProjection getNoteText(String id) throws Exception {
+        return noteRepository.findStoredTextById(id)
+                .map(StoredNoteText::of)
+                .orElseThrow(()-> new ResourceNotFoundException("Note not found for the given id"));
+    }
+
+    /**
+     * Version of a note, the ETag of its text. It is taken from the cached text, or read alone, so a
+     * conditional request does not load the text to answer 304.
+     */
+    public Long getNoteTextVersion(String id) {
+        Cache cache = cacheManager.getCache(CacheConfig.NOTE_TEXT_CACHE);
+        NoteTextProjection cached = cache == null ? null : cache.get(id, NoteTextProjection.class);
+        if(cached != null) {
+            return cached.getVersion();
+        }
+        Document document = noteRepository.findVersionById(id)
+                .orElseThrow(()-> new ResourceNotFoundException("Note not found for the given id"));
+        return StoredNoteText.versionOf(document);
+    }
+
+    /**
+     * Marker that changes whenever a note is created, updated or deleted. It is built from the estimated
+     * count, read from the collection metadata, and the latest modified date, read from its index. It is
+     * cached briefly, see {@link NotesVersionCache}, so most listings do not read it.
+     */
+    public String getNotesVersion() {
+        String cached = notesVersionCache.get();
+        if(cached != null) {
+            return cached;
+        }
+        long generation = notesVersionCache.generation();
+        long count = mongoTemplate.estimatedCount(Note.class);
+        long lastModified = noteRepository.findFirstByOrderByLastModifiedDateDesc()
+                .map(NoteVersionProjection::getLastModifiedDate)
+                .map(date -> date.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .orElse(0L);
+        String version = Long.toHexString(count) + "-" + Long.toHexString(lastModified);
+        notesVersionCache.put(generation, version);
+        return version;
+    }
+
+    public Map<String, Integer> getNoteStats(String id) throws Exception {
+        Map<String, Integer> stats = noteRepository.findStatsById(id)
+                .orElseThrow(()-> new ResourceNotFoundException("Note not found for the given id"))
+                .getStats();
+        if(stats == null) {
+            return findUniqueOccurrence(findById(id).getText());
+        }
+        return stats;
+    }
+
+    /**
+     * Sets the fields of the given note on the stored one in a single findAndModify, the stored text is
+     * neither read nor returned. The text and its stats are only written when the text hash differs from
+     * the stored one, see {@link #updateText}. When an expected version is given the write only happens if
+     * the stored note still has it, otherwise {@link VersionConflictException} is thrown.
+     */
+    public Note update(String id, Note note, Long expectedVersion) {
+        note.setTextHash(TextHash.of(note.getText()));
+        note.setLastModifiedDate(LocalDateTime.now());
+        Note updated = findAndModify(sameTextQuery(id, expectedVersion, note.getTextHash()), toUpdateKeepingText(note));
+        if(updated == null) {
+            updated = updateText(id, note, expectedVersion);
+        }
+        updated.setText(note.getText());
+        // stats are left out when the text is unchanged, they were not counted
+        updated.setStats(note.getStats());
+        eventPublisher.publishEvent(new NoteSavedEvent(updated));
+        return updated;
+    }
+
+    /**
+     * Writes a changed text with its stats. With incremental stats enabled the stored text and stats are
+     * read, the stats updated from the change and written only if the note still has the version that was
+     * read; a note modified in between gets its stats counted from scratch.
+     */
+    private Note updateText(String id, Note note, Long expectedVersion) {
+        if(incrementalStatsMaxChange > 0 && StringUtils.hasLength(note.getText())) {
+            Query query = Query.query(Criteria.where("id").is(id));
+            query.fields().include("text", "stats", "version");
+            Note stored = mongoTemplate.findOne(query, Note.class);
+            if(stored == null) {
+                throw new ResourceNotFoundException("Note not found for the given id");
+            }
+            long storedVersion = stored.getVersion() == null ? 0L : stored.getVersion();
+            if(expectedVersion != null && expectedVersion != storedVersion) {
+                throw new VersionConflictException("Note was modified since version " + expectedVersion);
+            }
+            if(stored.getStats() != null && stored.getText() != null) {
+                note.setStats(updateStats(stored.getStats(), stored.getText(), note.getText()));
+                Note updated = findAndModify(updateQuery(id, storedVersion), toUpdate(note, noteTextCompression));
+                if(updated != null) {
+                    return updated;
+                }
+            }
+        }
+        note.setStats(findUniqueOccurrence(note.getText()));
+        Note updated = findAndModify(updateQuery(id, expectedVersion), toUpdate(note, noteTextCompression));
+        if(updated == null) {
+            if(expectedVersion != null && noteRepository.existsById(id)) {
+                throw new VersionConflictException("Note was modified since version " + expectedVersion);
+            }
+            throw new ResourceNotFoundException("Note not found for the given id");
+        }
+        return updated;
     }
 
-    public void delete(Note note) {
+    private Note findAndModify(Query query, Update update) {
         try {
-        noteRepository.delete(note);
+            return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Note.class);
         } catch (Exception e) {
+            noteMetrics.recordError("update", e);
+            throw new RuntimeException("Error in creating or updating the note");
+        }
+    }
+
+    /**
+     * Query of {@link #update}, the updated note is returned without its text and stats.
+     */
+    static Query updateQuery(String id, Long expectedVersion) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        if(expectedVersion != null) {
+            // notes saved before the version field was added have none, they match version 0
+            query.addCriteria(expectedVersion == 0
+                    ? Criteria.where("version").in(0L, null)
+                    : Criteria.where("version").is(expectedVersion));
+        }
+        query.fields().exclude("text", "stats");
+        return query;
+    }
+
+    /**
+     * Query of an update that keeps the stored text, it only matches while the stored text has the given
+     * hash, or has no text when the hash is null.
+     */
+    static Query sameTextQuery(String id, Long expectedVersion, String textHash) {
+        return updateQuery(id, expectedVersion).addCriteria(textHash == null
+                ? Criteria.where("text").is(null)
+                : Criteria.where("textHash").is(textHash));
+    }
+
+    static Update toUpdate(Note note, NoteTextCompression textCompression) {
+        return textCompression.setText(toUpdateKeepingText(note), note.getText())
+                .set("textHash", note.getTextHash())
+                .set("stats", note.getStats());
+    }
+
+    static Update toUpdateKeepingText(Note note) {
+        Update update = new Update()
+                .set("title", note.getTitle())
+                .set("lastModifiedDate", note.getLastModifiedDate())
+                .inc("version", 1);
+        if(!CollectionUtils.isEmpty(note.getTags())) {
+            update.set("tags", note.getTags());
+        }
+        return update;
+    }
+
+    public void deleteById(String id) {
+        long deleted;
+        try {
+            deleted = noteRepository.removeById(id);
+        } catch (Exception e) {
+            noteMetrics.recordError("deleteById", e);
             throw new RuntimeException("Error in deleting a note");
         }
+        if(deleted == 0) {
+            throw new ResourceNotFoundException("Note not found for the given id");
+        }
+        eventPublisher.publishEvent(new NoteDeletedEvent(id));
     }
 
     public Map<String, Integer> findUniqueOccurrence(String noteText) {
-        Map<String, Integer> stringOccurrencesMap = new TreeMap<>(new DescendingOrderIgnoringCaseComparator());
-
         if(!StringUtils.hasLength(noteText)) {
-            return stringOccurrencesMap;
+            return new TreeMap<>(new DescendingOrderIgnoringCaseComparator());
+        }
+        if(parallelThreshold > 0 && noteText.length() > parallelThreshold) {
+            return ForkJoinPool.commonPool()
+                    .invoke(new ParallelWordCountTask(noteText, parallelSegmentSize))
+                    .toSortedMap();
         }
-        String noteTextWithoutAlphaNumerics = StringProcessingUtils.replaceAllAlphaNumerics(noteText);
+        return new WordFrequencyCounter()
+                .accept(noteText)
+                .toSortedMap();
+    }
 
-        String[] words = StringProcessingUtils.splitWithRegex(noteTextWithoutAlphaNumerics, " ");
+    private Map<String, Integer> updateStats(Map<String, Integer> stats, String previousText, String text) {
+        if(incrementalStatsMaxChange > 0 && StringUtils.hasLength(text)) {
+            Map<String, Integer> updated = IncrementalWordStats.update(stats, previousText, text,
+                    incrementalStatsMaxChange);
+            if(updated != null) {
+                return updated;
+            }
+        }
+        return findUniqueOccurrence(text);
+    }
 
-        for (String word : words) {
-            stringOccurrencesMap.merge(word.toLowerCase(), 1, Integer::sum);
+    /**
+     * Counts a streamed /stats body. Only this count is limited in unique words and word length, the
+     * other texts, stored notes included, are already in memory.
+     */
+    public Map<String, Integer> findUniqueOccurrence(Reader reader) throws IOException {
+        WordFrequencyCounter counter = new WordFrequencyCounter(maxUniqueTerms)
+                .rejectLongWords(WordFrequencyCounter.MAX_WORD_LENGTH);
+        char[] chunk = new char[STATS_CHUNK_SIZE];
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            counter.accept(chunk, 0, read);
         }
-        return stringOccurrencesMap;
+        return counter.toSortedMap();
     }
 }
@@ -0,0 +1,257 @@
+package com.teletronics.notes.services;
+
+import com.teletronics.notes.events.NoteChangesLostEvent;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.repositories.NoteRepository;
+import com.teletronics.notes.search.NoteTagIndex;
+import com.teletronics.notes.search.SearchHits;
+import com.teletronics.notes.search.TagExpression;
+import com.teletronics.notes.utils.NoteCursor;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Tag expression listings and tag counts. They are served by {@link NoteTagIndex} once it is built, and by
+ * queries on the tags field until then. The cursor listing always queries, its position is a creation date.
+ */
+@Service
+@Timed("notes.service")
+@Slf4j
+public class NoteTagService {
+    @Autowired
+    private NoteTagIndex noteTagIndex;
+    @Autowired
+    private NoteRepository noteRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private static final Duration MAX_BUILD_RETRY_DELAY = Duration.ofMinutes(5);
+
+    @Value("${notes.tags.build-on-startup:true}")
+    private boolean buildOnStartup;
+
+    // first wait before a failed build is retried, doubled after each failure
+    @Value("${notes.tags.build-retry-delay:5s}")
+    private Duration buildRetryDelay;
+
+    private volatile boolean ready;
+    // builds run one at a time
+    private final Object buildLock = new Object();
+    // notes changed while the index is being built, applied once it is
+    private final Map<String, Change> changedDuringBuild = new LinkedHashMap<>();
+
+    // tags null when the change keeps the indexed tags
+    private record Change(Set<Tag> tags, boolean deleted) {
+    }
+
+    public Page<NoteProjection> findAll(TagExpression expression, Pageable pageable) {
+        if(ready) {
+            SearchHits hits = findHits(expression, pageable);
+            return NoteSearchService.toPage(hits, noteRepository.findByIdIn(hits.ids()), pageable);
+        }
+        Query query = Query.query(expression.toCriteria());
+        List<NoteProjection> content = mongoTemplate.query(Note.class)
+                .as(NoteProjection.class)
+                .matching(Query.of(query).with(pageable))
+                .all();
+        return PageableExecutionUtils.getPage(content, pageable, () -> mongoTemplate.count(query, Note.class));
+    }
+
+    /**
+     * Page of the notes matching the expression in the index, which should be ready.
+     */
+    public SearchHits findHits(TagExpression expression, Pageable pageable) {
+        return noteTagIndex.find(expression, (int) pageable.getOffset(), pageable.getPageSize());
+    }
+
+    public Slice<NoteProjection> findAllAfter(TagExpression expression, NoteCursor after, int pageSize) {
+        List<NoteProjection> notes = mongoTemplate.query(Note.class)
+                .as(NoteProjection.class)
+                .matching(afterQuery(expression, after, pageSize))
+                .all();
+        boolean hasNext = notes.size() > pageSize;
+        return new SliceImpl<>(hasNext ? notes.subList(0, pageSize) : notes, PageRequest.of(0, pageSize), hasNext);
+    }
+
+    /**
+     * Query of {@link #findAllAfter}, one more note is read to know if there is a next slice. Same seek as
+     * {@link com.teletronics.notes.repositories.NoteRepository#findSliceAfter}.
+     */
+    public static Query afterQuery(TagExpression expression, NoteCursor after, int pageSize) {
+        Criteria criteria = expression.toCriteria();
+        if(after != null && after.hasKey()) {
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("createdDate").lt(after.createdDate()),
+                    Criteria.where("createdDate").is(after.createdDate()).and("_id").lt(after.id()),
+                    Criteria.where("createdDate").is(after.createdDate()).and("_id").type(JsonSchemaObject.Type.STRING),
+                    Criteria.where("createdDate").is(null)));
+        }
+        return Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdDate", "_id"))
+                .skip(after == null ? 0 : after.skip())
+                .limit(pageSize + 1);
+    }
+
+    /**
+     * Number of notes carrying each tag, tags of no note included.
+     */
+    public Map<String, Long> countByTag() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if(ready) {
+            noteTagIndex.counts().forEach((tag, count) -> counts.put(tag.name(), count));
+            return counts;
+        }
+        for (Tag tag : Tag.values()) {
+            counts.put(tag.name(), 0L);
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.unwind("tags"),
+                Aggregation.group("tags").count().as("count"));
+        mongoTemplate.aggregate(aggregation, Note.class, Document.class)
+                .forEach(group -> counts.computeIfPresent(group.getString("_id"),
+                        (tag, count) -> ((Number) group.get("count")).longValue()));
+        return counts;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if(!buildOnStartup) {
+            ready = true;
+            return;
+        }
+        Thread builder = new Thread(this::buildUntilDone, "tag-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Saved notes without tags keep their indexed tags, see {@link NoteTagIndex#index}.
+     */
+    @EventListener
+    public void onNoteSaved(NoteSavedEvent event) {
+        Note note = event.note();
+        if(!ready && deferDuringBuild(note.getId(), new Change(note.getTags(), false))) {
+            return;
+        }
+        noteTagIndex.index(note.getId(), note.getTags());
+    }
+
+    @EventListener
+    public void onNoteDeleted(NoteDeletedEvent event) {
+        if(!ready && deferDuringBuild(event.id(), new Change(null, true))) {
+            return;
+        }
+        noteTagIndex.remove(event.id());
+    }
+
+    /**
+     * The changes of other instances were lost, so the index is built again from every note. Listings
+     * and counts query the notes meanwhile.
+     */
+    @EventListener
+    public void onNoteChangesLost(NoteChangesLostEvent event) {
+        Thread builder = new Thread(this::rebuild, "tag-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void rebuild() {
+        synchronized (buildLock) {
+            synchronized (this) {
+                ready = false;
+            }
+            buildUntilDone();
+        }
+    }
+
+    /**
+     * Changes made during the build are applied after it, so notes created meanwhile get the last ordinals.
+     */
+    private synchronized boolean deferDuringBuild(String id, Change change) {
+        if(ready) {
+            return false;
+        }
+        Change previous = changedDuringBuild.get(id);
+        if(change.tags() == null && !change.deleted() && previous != null && !previous.deleted()) {
+            change = previous;
+        }
+        changedDuringBuild.put(id, change);
+        return true;
+    }
+
+    /**
+     * Builds the index, retrying after a failure with a doubling delay. Changes stay deferred meanwhile,
+     * at most one per note.
+     */
+    void buildUntilDone() {
+        synchronized (buildLock) {
+            Duration delay = buildRetryDelay;
+            while (!build()) {
+                log.warn("Retrying the tag index build in {}", delay);
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                Duration doubled = delay.multipliedBy(2);
+                delay = doubled.compareTo(MAX_BUILD_RETRY_DELAY) > 0 ? MAX_BUILD_RETRY_DELAY : doubled;
+            }
+        }
+    }
+
+    boolean build() {
+        long start = System.currentTimeMillis();
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "createdDate", "_id"));
+        query.fields().include("tags");
+        try {
+            // a failed build may have indexed part of the notes
+            noteTagIndex.clear();
+            try (Stream<Note> notes = mongoTemplate.stream(query, Note.class)) {
+                notes.forEach(note -> noteTagIndex.index(note.getId(), note.getTags()));
+            }
+            synchronized (this) {
+                changedDuringBuild.forEach((id, change) -> {
+                    if(change.deleted()) {
+                        noteTagIndex.remove(id);
+                    } else {
+                        noteTagIndex.index(id, change.tags());
+                    }
+                });
+                changedDuringBuild.clear();
+                ready = true;
+            }
+            noteTagIndex.optimize();
+            log.info("Tag index built with {} notes in {} ms", noteTagIndex.size(), System.currentTimeMillis() - start);
+            return true;
+        } catch (Exception e) {
+            log.error("Error in building the tag index", e);
+            return false;
+        }
+    }
+}
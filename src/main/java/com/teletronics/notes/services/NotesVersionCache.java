@@ -0,0 +1,67 @@
+package com.teletronics.notes.services;
+
+import com.teletronics.notes.events.NoteChangesLostEvent;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Last version of the notes collection, the ETag of the listings, kept for a short ttl so the listings do not
+ * read it on every request. It is dropped on every save and delete, those of other instances included when
+ * the change stream is followed. A version read while a note changed is not kept, it may predate the change.
+ */
+@Component
+public class NotesVersionCache {
+    private record Entry(String version, long expiresAt) {
+    }
+
+    @Value("${notes.cache.notes-version.ttl:1s}")
+    private Duration ttl;
+
+    private long generation;
+    private Entry entry;
+
+    /**
+     * The cached version, null when there is none or it expired.
+     */
+    public synchronized String get() {
+        return entry != null && System.nanoTime() - entry.expiresAt() < 0 ? entry.version() : null;
+    }
+
+    /**
+     * Taken before reading the version and given back to {@link #put}.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void put(long readAt, String version) {
+        if(readAt == generation) {
+            entry = new Entry(version, System.nanoTime() + ttl.toNanos());
+        }
+    }
+
+    @EventListener
+    public void onNoteSaved(NoteSavedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onNoteDeleted(NoteDeletedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onNoteChangesLost(NoteChangesLostEvent event) {
+        invalidate();
+    }
+
+    private synchronized void invalidate() {
+        generation++;
+        entry = null;
+    }
+}
@@ -0,0 +1,339 @@
+package com.teletronics.notes.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.teletronics.notes.configs.NoteTextCompression;
+import com.teletronics.notes.dtos.BulkResponseDto;
+import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.exceptions.ResourceNotFoundException;
+import com.teletronics.notes.exceptions.VersionConflictException;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.repositories.NoteTextProjection;
+import com.teletronics.notes.repositories.NoteVersionProjection;
+import com.teletronics.notes.repositories.ReactiveNoteRepository;
+import com.teletronics.notes.repositories.StoredNoteText;
+import com.teletronics.notes.search.TagExpression;
+import com.teletronics.notes.utils.NoteCursor;
+import com.teletronics.notes.utils.TextHash;
+import com.teletronics.notes.utils.WordFrequencyCounter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Non blocking version of {@link NoteService} for the reactive profile. Database calls go through the
+ * reactive driver, word counting is CPU bound and runs on the parallel scheduler so it does not hold the
+ * event loop. Writes publish the same note events, so the search index and the caches stay in sync.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveNoteService {
+    @Autowired
+    private ReactiveNoteRepository noteRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteTextCompression noteTextCompression;
+
+    @Autowired
+    private NoteSearchService noteSearchService;
+
+    @Autowired
+    private NoteTagService noteTagService;
+
+    @Autowired
+    private NoteBulkService noteBulkService;
+
+    @Autowired
+    private NoteMapper noteMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private NotesVersionCache notesVersionCache;
+
+    @Value("${notes.export.batch-size:500}")
+    private int exportBatchSize;
+
+    @Value("${notes.stats.max-unique-terms:1000000}")
+    private int maxUniqueTerms;
+
+    public Mono<Page<NoteProjection>> findAll(Set<String> tags, Pageable pageable) {
+        Flux<NoteProjection> content = CollectionUtils.isEmpty(tags)
+                ? noteRepository.findAllProjectedBy(pageable)
+                : noteRepository.findByTagsIn(tags, pageable);
+        Mono<Long> count = CollectionUtils.isEmpty(tags)
+                ? noteRepository.count()
+                : noteRepository.countByTagsIn(tags);
+        return Mono.zip(content.collectList(), count)
+                .<Page<NoteProjection>>map(page -> new PageImpl<>(page.getT1(), pageable, page.getT2()))
+                .onErrorMap(e -> new RuntimeException("Error in getting notes page"));
+    }
+
+    /**
+     * Same listing as {@link NoteTagService#findAll}, the page is read from the tag index once it is built.
+     */
+    public Mono<Page<NoteProjection>> findAll(TagExpression expression, Pageable pageable) {
+        if(noteTagService.isReady()) {
+            return Mono.fromCallable(() -> noteTagService.findHits(expression, pageable))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(hits -> noteRepository.findByIdIn(hits.ids())
+                            .collectList()
+                            .map(notes -> NoteSearchService.toPage(hits, notes, pageable)));
+        }
+        Query query = Query.query(expression.toCriteria());
+        Mono<List<NoteProjection>> content = mongoTemplate.query(Note.class)
+                .as(NoteProjection.class)
+                .matching(Query.of(query).with(pageable))
+                .all()
+                .collectList();
+        return Mono.zip(content, mongoTemplate.count(query, Note.class))
+                .<Page<NoteProjection>>map(page -> new PageImpl<>(page.getT1(), pageable, page.getT2()))
+                .onErrorMap(e -> new RuntimeException("Error in getting notes page"));
+    }
+
+    public Mono<Slice<NoteProjection>> findAllAfter(TagExpression expression, NoteCursor after, int pageSize) {
+        return mongoTemplate.query(Note.class)
+                .as(NoteProjection.class)
+                .matching(NoteTagService.afterQuery(expression, after, pageSize))
+                .all()
+                .collectList()
+                .<Slice<NoteProjection>>map(notes -> new SliceImpl<>(notes.subList(0, Math.min(pageSize, notes.size())),
+                        PageRequest.of(0, pageSize),
+                        notes.size() > pageSize))
+                .onErrorMap(e -> new RuntimeException("Error in getting notes page"));
+    }
+
+    public Mono<Slice<NoteProjection>> findAllAfter(Set<String> tags, NoteCursor after, int pageSize) {
+        // one more note is read to know if there is a next slice, the notes the cursor skips are dropped
+        int skip = after == null ? 0 : after.skip();
+        Pageable pageable = PageRequest.of(0, skip + pageSize + 1, Sort.by(Sort.Direction.DESC, "createdDate", "id"));
+        Flux<NoteProjection> content;
+        if(after == null || !after.hasKey()) {
+            content = CollectionUtils.isEmpty(tags)
+                    ? noteRepository.findAllProjectedBy(pageable)
+                    : noteRepository.findByTagsIn(tags, pageable);
+        } else {
+            content = CollectionUtils.isEmpty(tags)
+                    ? noteRepository.findAfter(after.createdDate(), after.id(), pageable)
+                    : noteRepository.findByTagsInAfter(after.createdDate(), after.id(), tags, pageable);
+        }
+        return content.skip(skip)
+                .collectList()
+                .<Slice<NoteProjection>>map(notes -> new SliceImpl<>(notes.subList(0, Math.min(pageSize, notes.size())),
+                        PageRequest.of(0, pageSize),
+                        notes.size() > pageSize))
+                .onErrorMap(e -> new RuntimeException("Error in getting notes page"));
+    }
+
+    public Mono<Page<NoteProjection>> search(String query, Pageable pageable) {
+        return Mono.fromCallable(() -> noteSearchService.findHits(query, pageable))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(hits -> noteRepository.findByIdIn(hits.ids())
+                        .collectList()
+                        .map(notes -> NoteSearchService.toPage(hits, notes, pageable)));
+    }
+
+    public Mono<Map<String, Long>> countByTag() {
+        return Mono.fromCallable(noteTagService::countByTag)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Note> save(Note note) {
+        return countWords(note.getText())
+                .flatMap(stats -> {
+                    note.setStats(stats);
+                    note.setTextHash(TextHash.of(note.getText()));
+                    return noteRepository.save(note)
+                            .onErrorMap(e -> new RuntimeException("Error in creating or updating the note"));
+                })
+                .flatMap(saved -> publish(new NoteSavedEvent(saved)).thenReturn(saved));
+    }
+
+    /**
+     * Same single findAndModify as {@link NoteService#update}, a changed text has its stats counted from scratch.
+     */
+    public Mono<Note> update(String id, Note note, Long expectedVersion) {
+        note.setLastModifiedDate(LocalDateTime.now());
+        return Mono.fromCallable(() -> TextHash.of(note.getText()))
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(textHash -> {
+                    note.setTextHash(textHash);
+                    return mongoTemplate.findAndModify(NoteService.sameTextQuery(id, expectedVersion, textHash),
+                            NoteService.toUpdateKeepingText(note),
+                            FindAndModifyOptions.options().returnNew(true),
+                            Note.class)
+                            .onErrorMap(e -> new RuntimeException("Error in creating or updating the note"));
+                })
+                .switchIfEmpty(Mono.defer(() -> countWords(note.getText()))
+                        .flatMap(stats -> {
+                            note.setStats(stats);
+                            return mongoTemplate.findAndModify(NoteService.updateQuery(id, expectedVersion),
+                                    NoteService.toUpdate(note, noteTextCompression),
+                                    FindAndModifyOptions.options().returnNew(true),
+                                    Note.class)
+                                    .onErrorMap(e -> new RuntimeException("Error in creating or updating the note"));
+                        }))
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null
+                        ? Mono.just(false)
+                        : noteRepository.existsById(id))
+                        .flatMap(exists -> Mono.error(exists
+                                ? new VersionConflictException("Note was modified since version " + expectedVersion)
+                                : new ResourceNotFoundException("Note not found for the given id"))))
+                .flatMap(updated -> {
+                    updated.setText(note.getText());
+                    updated.setStats(note.getStats());
+                    return publish(new NoteSavedEvent(updated)).thenReturn(updated);
+                });
+    }
+
+    public Mono<Void> deleteById(String id) {
+        return noteRepository.removeById(id)
+                .onErrorMap(e -> new RuntimeException("Error in deleting a note"))
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.<Void>error(new ResourceNotFoundException("Note not found for the given id"))
+                        : publish(new NoteDeletedEvent(id)));
+    }
+
+    /**
+     * The listeners index the note and take the index locks, so they run on the blocking pool and not on
+     * the driver thread that completed the write.
+     */
+    private Mono<Void> publish(Object event) {
+        return Mono.<Void>fromRunnable(() -> eventPublisher.publishEvent(event))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Applies the operations with {@link NoteBulkService}. Its writes are blocking, so it runs on the
+     * blocking pool and takes the lines as they arrive.
+     */
+    public Mono<BulkResponseDto> bulk(Flux<String> lines) {
+        return Mono.fromCallable(() -> noteBulkService.process(lines.toIterable().iterator()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Same notes and lines as {@link NoteExportService#export}, each note is a line of UTF-8 JSON ending
+     * with a newline. The driver reads them in cursor batches as the response asks for more.
+     */
+    public Flux<byte[]> export(Set<String> tags, LocalDateTime modifiedSince) {
+        ObjectWriter writer = objectMapper.writerFor(NoteDto.class);
+        return mongoTemplate.find(NoteExportService.exportQuery(tags, modifiedSince, exportBatchSize), Note.class)
+                .handle((note, sink) -> {
+                    try {
+                        byte[] json = writer.writeValueAsBytes(NoteExportService.toExportDto(noteMapper, note));
+                        byte[] line = Arrays.copyOf(json, json.length + 1);
+                        line[json.length] = '\n';
+                        sink.next(line);
+                    } catch (JsonProcessingException e) {
+                        sink.error(e);
+                    }
+                });
+    }
+
+    public Mono<NoteTextProjection> getNoteText(String id) {
+        return noteRepository.findTextById(id)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Note not found for the given id")));
+    }
+
+    /**
+     * Version of a note read alone, see {@link NoteService#getNoteTextVersion}.
+     */
+    public Mono<Long> getNoteTextVersion(String id) {
+        return noteRepository.findVersionById(id)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Note not found for the given id")))
+                .mapNotNull(StoredNoteText::versionOf)
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Same marker as {@link NoteService#getNotesVersion()}.
+     */
+    public Mono<String> getNotesVersion() {
+        return Mono.defer(() -> {
+            String cached = notesVersionCache.get();
+            if(cached != null) {
+                return Mono.just(cached);
+            }
+            long generation = notesVersionCache.generation();
+            Mono<Long> lastModified = noteRepository.findFirstByOrderByLastModifiedDateDesc()
+                    .mapNotNull(NoteVersionProjection::getLastModifiedDate)
+                    .map(date -> date.toInstant(ZoneOffset.UTC).toEpochMilli())
+                    .defaultIfEmpty(0L);
+            return Mono.zip(mongoTemplate.estimatedCount(Note.class), lastModified)
+                    .map(version -> Long.toHexString(version.getT1()) + "-" + Long.toHexString(version.getT2()))
+                    .doOnNext(version -> notesVersionCache.put(generation, version));
+        });
+    }
+
+    public Mono<Map<String, Integer>> getNoteStats(String id) {
+        return noteRepository.findStatsById(id)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Note not found for the given id")))
+                .flatMap(projection -> projection.getStats() != null
+                        ? Mono.just(projection.getStats())
+                        : getNoteText(id).flatMap(note -> countWords(note.getText())));
+    }
+
+    public Mono<Map<String, Integer>> countWords(String text) {
+        return Mono.fromCallable(() -> noteService.findUniqueOccurrence(text))
+                .subscribeOn(Schedulers.parallel());
+    }
+
+    /**
+     * Counts the words of a streamed body without decoding it. Words are ASCII letters and digits, and
+     * in UTF-8 or any other ASCII compatible charset every byte of a non ASCII character is above 0x7F,
+     * so such bytes can be taken as separators.
+     */
+    public Mono<Map<String, Integer>> countWords(Flux<DataBuffer> text) {
+        return Mono.defer(() -> {
+            WordFrequencyCounter counter = new WordFrequencyCounter(maxUniqueTerms)
+                    .rejectLongWords(WordFrequencyCounter.MAX_WORD_LENGTH);
+            return text.publishOn(Schedulers.parallel())
+                    .doOnNext(buffer -> {
+                        try {
+                            for (int i = buffer.readPosition(); i < buffer.writePosition(); i++) {
+                                byte b = buffer.getByte(i);
+                                counter.accept(b >= 0 ? (char) b : ' ');
+                            }
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(counter::toSortedMap));
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.teletronics.notes.utils;
+
+import com.teletronics.notes.comparators.DescendingOrderIgnoringCaseComparator;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Updates stored word stats from a text change without counting the whole new text. The changed
+ * region is what is left once the common prefix and suffix of both texts are removed, widened to
+ * word boundaries. Words of the old region are subtracted and words of the new region are added.
+ */
+public class IncrementalWordStats {
+
+    private IncrementalWordStats() {
+    }
+
+    /**
+     * @param stats         stats of the old text
+     * @param maxChange     largest changed region, as a fraction of the new text length, that is
+     *                      applied incrementally
+     * @return the stats of the new text, or null when the change is too large or the stored stats
+     * do not match the old text, in which case the new text should be counted from scratch
+     */
+    public static Map<String, Integer> update(Map<String, Integer> stats, String oldText, String newText,
+                                              double maxChange) {
+        int oldLength = oldText.length();
+        int newLength = newText.length();
+        int limit = Math.min(oldLength, newLength);
+
+        int start = 0;
+        while (start < limit && oldText.charAt(start) == newText.charAt(start)) {
+            start++;
+        }
+        int suffix = 0;
+        while (suffix < limit - start
+                && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        int oldEnd = oldLength - suffix;
+        int newEnd = newLength - suffix;
+
+        // common prefix and suffix are identical in both texts, so widen both regions the same way
+        while (start > 0 && StringProcessingUtils.isAlphaNumeric(oldText.charAt(start - 1))) {
+            start--;
+        }
+        while (oldEnd < oldLength && StringProcessingUtils.isAlphaNumeric(oldText.charAt(oldEnd))) {
+            oldEnd++;
+            newEnd++;
+        }
+
+        if (Math.max(oldEnd, newEnd) - start > maxChange * newLength) {
+            return null;
+        }
+
+        WordFrequencyCounter removed = new WordFrequencyCounter().accept(oldText, start, oldEnd);
+        WordFrequencyCounter inserted = new WordFrequencyCounter().accept(newText, start, newEnd);
+
+        TreeMap<String, Integer> result = new TreeMap<>(new DescendingOrderIgnoringCaseComparator());
+        result.putAll(stats);
+        boolean[] mismatch = new boolean[1];
+        removed.forEach((word, count) -> {
+            Integer current = result.get(word);
+            if (current == null || current < count) {
+                mismatch[0] = true;
+            } else if (current == count) {
+                result.remove(word);
+            } else {
+                result.put(word, current - count);
+            }
+        });
+        if (mismatch[0]) {
+            return null;
+        }
+        inserted.forEach((word, count) -> result.merge(word, count, Integer::sum));
+        return result;
+    }
+}
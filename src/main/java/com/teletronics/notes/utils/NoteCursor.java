@@ -0,0 +1,75 @@
+package com.teletronics.notes.utils;
+
+import com.teletronics.notes.exceptions.InvalidCursorException;
+import com.teletronics.notes.repositories.NoteProjection;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position of a note in the notes listing sorted by created date and id, both descending. Clients get
+ * it as an opaque url safe string. Only a note with a created date and an ObjectId id can be seeked past,
+ * notes saved before auditing or imported with another id are skipped over: the cursor is the last such
+ * note before them, or the start of the listing, and the number of notes to skip after it.
+ */
+public record NoteCursor(LocalDateTime createdDate, ObjectId id, int skip) {
+
+    private static final char SEPARATOR = '|';
+
+    public NoteCursor(LocalDateTime createdDate, ObjectId id) {
+        this(createdDate, id, 0);
+    }
+
+    /**
+     * Cursor of the page after the given one, read from the current cursor, null for the first page.
+     */
+    public static NoteCursor next(NoteCursor current, List<? extends NoteProjection> page) {
+        for (int i = page.size() - 1; i >= 0; i--) {
+            NoteProjection note = page.get(i);
+            if (note.getCreatedDate() != null && ObjectId.isValid(note.getId())) {
+                return new NoteCursor(note.getCreatedDate(), new ObjectId(note.getId()), page.size() - 1 - i);
+            }
+        }
+        return current == null
+                ? new NoteCursor(null, null, page.size())
+                : new NoteCursor(current.createdDate(), current.id(), current.skip() + page.size());
+    }
+
+    public static NoteCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            int skipSeparator = value.indexOf(SEPARATOR, separator + 1);
+            int skip = skipSeparator < 0 ? 0 : Integer.parseInt(value.substring(skipSeparator + 1));
+            String id = value.substring(separator + 1, skipSeparator < 0 ? value.length() : skipSeparator);
+            if (skip < 0 || (separator == 0 && id.isEmpty() && skip == 0)) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            if (separator == 0 && id.isEmpty()) {
+                return new NoteCursor(null, null, skip);
+            }
+            return new NoteCursor(LocalDateTime.parse(value.substring(0, separator)), new ObjectId(id), skip);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Whether the cursor seeks past a note, otherwise it skips from the start of the listing.
+     */
+    public boolean hasKey() {
+        return createdDate != null;
+    }
+
+    public String encode() {
+        String value = hasKey() ? createdDate.toString() + SEPARATOR + id.toHexString() : String.valueOf(SEPARATOR);
+        if (skip > 0) {
+            value += String.valueOf(SEPARATOR) + skip;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,49 @@
+package com.teletronics.notes.utils;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the words of a text on a fork/join pool. The text is split in halves until a segment is not
+ * longer than the segment size, split points are moved to the next non alphanumeric char so a word
+ * is never cut. Each segment is counted into its own {@link WordFrequencyCounter} and the partial
+ * counters are merged on the way back.
+ */
+public class ParallelWordCountTask extends RecursiveTask<WordFrequencyCounter> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CharSequence text;
+    private final int start;
+    private final int end;
+    private final int segmentSize;
+
+    public ParallelWordCountTask(CharSequence text, int segmentSize) {
+        this(text, 0, text.length(), segmentSize);
+    }
+
+    private ParallelWordCountTask(CharSequence text, int start, int end, int segmentSize) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        this.segmentSize = Math.max(segmentSize, 1);
+    }
+
+    @Override
+    protected WordFrequencyCounter compute() {
+        if (end - start > segmentSize) {
+            int split = start + (end - start) / 2;
+            while (split < end && StringProcessingUtils.isAlphaNumeric(text.charAt(split))) {
+                split++;
+            }
+            if (split < end) {
+                ParallelWordCountTask right = new ParallelWordCountTask(text, split, end, segmentSize);
+                right.fork();
+                WordFrequencyCounter left = new ParallelWordCountTask(text, start, split, segmentSize).compute();
+                return left.merge(right.join());
+            }
+        }
+        return new WordFrequencyCounter()
+                .accept(text, start, end)
+                .finish();
+    }
+}
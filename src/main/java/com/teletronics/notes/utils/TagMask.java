@@ -0,0 +1,84 @@
+package com.teletronics.notes.utils;
+
+import com.teletronics.notes.models.Tag;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tags as a bit mask of their ordinals. The tag sets and the name sets of every mask are computed once, so
+ * converting the tags of a note allocates nothing. The sets are unmodifiable and iterate in ordinal order.
+ */
+public final class TagMask {
+    private static final Tag[] TAGS = Tag.values();
+    private static final Map<String, Tag> TAGS_BY_NAME = new HashMap<>();
+    private static final Set<Tag>[] TAG_SETS;
+    private static final Set<String>[] NAME_SETS;
+
+    static {
+        for (Tag tag : TAGS) {
+            TAGS_BY_NAME.put(tag.name(), tag);
+        }
+        @SuppressWarnings("unchecked")
+        Set<Tag>[] tagSets = new Set[1 << TAGS.length];
+        @SuppressWarnings("unchecked")
+        Set<String>[] nameSets = new Set[1 << TAGS.length];
+        for (int mask = 0; mask < tagSets.length; mask++) {
+            EnumSet<Tag> tags = EnumSet.noneOf(Tag.class);
+            Set<String> names = new LinkedHashSet<>();
+            for (Tag tag : TAGS) {
+                if ((mask & bit(tag)) != 0) {
+                    tags.add(tag);
+                    names.add(tag.name());
+                }
+            }
+            tagSets[mask] = Collections.unmodifiableSet(tags);
+            nameSets[mask] = Collections.unmodifiableSet(names);
+        }
+        TAG_SETS = tagSets;
+        NAME_SETS = nameSets;
+    }
+
+    private TagMask() {
+    }
+
+    public static int bit(Tag tag) {
+        return 1 << tag.ordinal();
+    }
+
+    /**
+     * @throws IllegalArgumentException for a name that is not a {@link Tag}, as {@link Tag#valueOf} does
+     */
+    public static int ofNames(Collection<String> names) {
+        int mask = 0;
+        for (String name : names) {
+            Tag tag = TAGS_BY_NAME.get(name);
+            if (tag == null) {
+                throw new IllegalArgumentException("No tag " + name);
+            }
+            mask |= bit(tag);
+        }
+        return mask;
+    }
+
+    public static int ofTags(Collection<Tag> tags) {
+        int mask = 0;
+        for (Tag tag : tags) {
+            mask |= bit(tag);
+        }
+        return mask;
+    }
+
+    public static Set<Tag> tags(int mask) {
+        return TAG_SETS[mask];
+    }
+
+    public static Set<String> names(int mask) {
+        return NAME_SETS[mask];
+    }
+}
@@ -0,0 +1,80 @@
+package com.teletronics.notes.utils;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Checksum;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * LZ4 compression of the note texts, with the pure Java implementation. Texts are compressed in the LZ4
+ * block stream format, blocks of at most 64 KB of UTF-8 each, so a text is written out one block at a
+ * time.
+ */
+public final class TextCompression {
+    public static final String CODEC = "lz4";
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestJavaInstance();
+    private static final XXHashFactory XXHASH = XXHashFactory.fastestJavaInstance();
+    // seed of the block stream checksum, the one LZ4BlockOutputStream uses by default
+    private static final int CHECKSUM_SEED = 0x9747b28c;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private TextCompression() {
+    }
+
+    /**
+     * Compressed UTF-8 bytes of the text, or null when they would not be smaller than the text.
+     */
+    public static byte[] compress(String text) {
+        byte[] utf8 = text.getBytes(UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(utf8.length / 2);
+        try (OutputStream out = new LZ4BlockOutputStream(compressed, BLOCK_SIZE, LZ4.fastCompressor(), checksum(), false)) {
+            out.write(utf8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.size() >= utf8.length ? null : compressed.toByteArray();
+    }
+
+    /**
+     * UTF-8 bytes of a compressed text.
+     */
+    public static byte[] decompress(byte[] compressed) {
+        ByteArrayOutputStream utf8 = new ByteArrayOutputStream(compressed.length * 2);
+        try {
+            decompressTo(compressed, utf8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return utf8.toByteArray();
+    }
+
+    public static String decompressToString(byte[] compressed) {
+        return new String(decompress(compressed), UTF_8);
+    }
+
+    /**
+     * Writes the UTF-8 bytes of a compressed text, a block at a time.
+     */
+    public static void decompressTo(byte[] compressed, OutputStream out) throws IOException {
+        try (InputStream in = LZ4BlockInputStream.newBuilder()
+                .withDecompressor(LZ4.safeDecompressor())
+                .withChecksum(checksum())
+                .build(new ByteArrayInputStream(compressed))) {
+            in.transferTo(out);
+        }
+    }
+
+    private static Checksum checksum() {
+        return XXHASH.newStreamingHash32(CHECKSUM_SEED).asChecksum();
+    }
+}
@@ -0,0 +1,29 @@
+package com.teletronics.notes.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * SHA-256 of the UTF-8 text, stored with the note so an update can tell whether the text changed without
+ * reading it.
+ */
+public final class TextHash {
+
+    private TextHash() {
+    }
+
+    public static String of(String text) {
+        if(text == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.teletronics.notes.utils;
+
+import com.teletronics.notes.comparators.DescendingOrderIgnoringCaseComparator;
+import com.teletronics.notes.exceptions.StatsLimitExceededException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Single pass word counter. Words are the runs of ASCII letters and digits (same rule as
+ * {@link StringProcessingUtils#replaceAllAlphaNumerics(String)}), lower cased while they are scanned.
+ * Counts are kept in an open addressing table whose keys are char ranges of a shared pool, so no
+ * String is created per occurrence, only one per unique word when the result is built.
+ * <p>
+ * Characters can be fed in several calls, a word that spans two calls is counted once, so memory
+ * depends on the number of unique words and not on the size of the input. A maximum of unique words
+ * can be given, going over it throws {@link StatsLimitExceededException}. Words are kept whole unless
+ * a maximum word length is set, longer words are then either rejected, which bounds the memory of a
+ * streamed input, or skipped.
+ * Instances are not thread safe.
+ */
+public class WordFrequencyCounter {
+    public static final int MAX_WORD_LENGTH = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxUniqueWords;
+    private int maxWordLength;
+    private boolean skipLongWords;
+
+    // hash table, slot value is entry index + 1, 0 means empty
+    private int[] slots = new int[INITIAL_CAPACITY];
+
+    // entries, key chars are stored in the pool at [keyOffsets[i], keyOffsets[i] + keyLengths[i])
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] keyOffsets = new int[INITIAL_CAPACITY];
+    private int[] keyLengths = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private char[] pool = new char[INITIAL_CAPACITY * 8];
+    private int poolSize;
+    private int size;
+
+    // word being scanned
+    private char[] word = new char[32];
+    private int wordLength;
+    private int wordHash;
+    // the word being scanned is too long and is skipped
+    private boolean skipping;
+
+    public WordFrequencyCounter() {
+        this(0);
+    }
+
+    /**
+     * @param maxUniqueWords maximum number of unique words, zero or less means no limit
+     */
+    public WordFrequencyCounter(int maxUniqueWords) {
+        this.maxUniqueWords = maxUniqueWords;
+    }
+
+    /**
+     * Throws {@link StatsLimitExceededException} on a word longer than the given number of characters.
+     */
+    public WordFrequencyCounter rejectLongWords(int maxWordLength) {
+        this.maxWordLength = maxWordLength;
+        this.skipLongWords = false;
+        return this;
+    }
+
+    /**
+     * Leaves out the words longer than the given number of characters.
+     */
+    public WordFrequencyCounter skipLongWords(int maxWordLength) {
+        this.maxWordLength = maxWordLength;
+        this.skipLongWords = true;
+        return this;
+    }
+
+    public WordFrequencyCounter accept(CharSequence text) {
+        return accept(text, 0, text.length());
+    }
+
+    public WordFrequencyCounter accept(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            accept(text.charAt(i));
+        }
+        return this;
+    }
+
+    public WordFrequencyCounter accept(char[] chars, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(chars[i]);
+        }
+        return this;
+    }
+
+    public void accept(char c) {
+        if (StringProcessingUtils.isAlphaNumeric(c)) {
+            if (skipping) {
+                return;
+            }
+            char lower = StringProcessingUtils.toLowerCase(c);
+            if (wordLength == word.length) {
+                if (maxWordLength > 0 && wordLength >= maxWordLength) {
+                    if (!skipLongWords) {
+                        throw new StatsLimitExceededException("Text has a word longer than " + maxWordLength + " characters");
+                    }
+                    skipping = true;
+                    wordLength = 0;
+                    wordHash = 0;
+                    return;
+                }
+                word = Arrays.copyOf(word, maxWordLength > 0 ? Math.min(wordLength << 1, maxWordLength) : wordLength << 1);
+            }
+            word[wordLength++] = lower;
+            wordHash = 31 * wordHash + lower;
+        } else {
+            skipping = false;
+            if (wordLength > 0) {
+                endWord();
+            }
+        }
+    }
+
+    /**
+     * Counts the word that is still being scanned, if any. Call it once the input is exhausted.
+     */
+    public WordFrequencyCounter finish() {
+        skipping = false;
+        if (wordLength > 0) {
+            endWord();
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds all the counts of the given counter to this one. Both counters should be finished.
+     */
+    public WordFrequencyCounter merge(WordFrequencyCounter other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.pool, other.keyOffsets[i], other.keyLengths[i], other.hashes[i], other.counts[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Calls the action with every word and its count, in no particular order.
+     */
+    public void forEach(ObjIntConsumer<String> action) {
+        finish();
+        for (int i = 0; i < size; i++) {
+            action.accept(new String(pool, keyOffsets[i], keyLengths[i]), counts[i]);
+        }
+    }
+
+    /**
+     * Builds the result map, keys are sorted once with {@link DescendingOrderIgnoringCaseComparator}
+     * and the map keeps that order.
+     */
+    public Map<String, Integer> toSortedMap() {
+        finish();
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = new String(pool, keyOffsets[i], keyLengths[i]);
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        DescendingOrderIgnoringCaseComparator comparator = new DescendingOrderIgnoringCaseComparator();
+        Arrays.sort(order, (o1, o2) -> comparator.compare(keys[o1], keys[o2]));
+
+        Map<String, Integer> result = new LinkedHashMap<>((int) (size / 0.75f) + 1);
+        for (Integer i : order) {
+            result.put(keys[i], counts[i]);
+        }
+        return result;
+    }
+
+    private void endWord() {
+        add(word, 0, wordLength, wordHash, 1);
+        wordLength = 0;
+        wordHash = 0;
+    }
+
+    private void add(char[] chars, int offset, int length, int hash, int count) {
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (hashes[entry] == hash && keyEquals(entry, chars, offset, length)) {
+                counts[entry] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (maxUniqueWords > 0 && size == maxUniqueWords) {
+            throw new StatsLimitExceededException("Text has more than " + maxUniqueWords + " unique words");
+        }
+        int entry = size++;
+        if (entry == counts.length) {
+            growEntries();
+        }
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length << 1, poolSize + length));
+        }
+        System.arraycopy(chars, offset, pool, poolSize, length);
+        hashes[entry] = hash;
+        keyOffsets[entry] = poolSize;
+        keyLengths[entry] = length;
+        counts[entry] = count;
+        poolSize += length;
+        slots[slot] = entry + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+    }
+
+    private boolean keyEquals(int entry, char[] chars, int offset, int length) {
+        if (keyLengths[entry] != length) {
+            return false;
+        }
+        int keyOffset = keyOffsets[entry];
+        return Arrays.equals(pool, keyOffset, keyOffset + length, chars, offset, offset + length);
+    }
+
+    private void growEntries() {
+        int capacity = counts.length << 1;
+        hashes = Arrays.copyOf(hashes, capacity);
+        keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+        keyLengths = Arrays.copyOf(keyLengths, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = spread(hashes[entry]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
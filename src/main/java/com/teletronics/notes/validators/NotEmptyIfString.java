@@ -4,8 +4,10 @@ import jakarta.validation.*;
 import org.springframework.util.StringUtils;
 
 import java.lang.annotation.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.util.Optional;
 
 
 
@@ -34,37 +36,67 @@ public @interface NotEmptyIfString {
         NotEmptyIfString[] value();
     }
 
+    /**
+     * Field getters are looked up once per validated class and kept as method handles, a validation only
+     * reads the two fields.
+     */
     class NotEmptyIfStringValidator implements ConstraintValidator<NotEmptyIfString, Object> {
 
         private NotEmptyIfString constraintAnnotation;
 
+        private ClassValue<MethodHandle[]> getters;
+
         @Override
         public void initialize(NotEmptyIfString constraintAnnotation) {
             this.constraintAnnotation = constraintAnnotation;
+            this.getters = new ClassValue<>() {
+                @Override
+                protected MethodHandle[] computeValue(Class<?> type) {
+                    return new MethodHandle[]{
+                            getter(type, constraintAnnotation.targetField()),
+                            getter(type, constraintAnnotation.dependentField())
+                    };
+                }
+            };
         }
 
         @Override
         public boolean isValid(Object object, ConstraintValidatorContext context) {
+            MethodHandle[] fields = getters.get(object.getClass());
+            boolean isMatchCondition = switch (constraintAnnotation.condition()) {
+                case EMPTY -> !hasLength(fields[1], object);
+                case NOT_EMPTY -> hasLength(fields[1], object);
+            };
+            return !isMatchCondition || hasLength(fields[0], object);
+        }
 
+        private static boolean hasLength(MethodHandle getter, Object object) {
+            Object value;
             try {
-
-                Field field = object.getClass().getDeclaredField(constraintAnnotation.targetField());
-                field.setAccessible(true);
-                String targetField = Optional.ofNullable(field.get(object)).orElse("").toString();
-
-                Field dependent = object.getClass().getDeclaredField(constraintAnnotation.dependentField());
-                dependent.setAccessible(true);
-                String dependentField = Optional.ofNullable(dependent.get(object)).orElse("").toString();
-
-                boolean isMatchCondition = switch (constraintAnnotation.condition()) {
-                    case EMPTY -> !StringUtils.hasLength(dependentField);
-                    case NOT_EMPTY -> StringUtils.hasLength(dependentField);
-
-                };
-                return !isMatchCondition || StringUtils.hasLength(targetField);
-            } catch (Exception e) {
+                value = (Object) getter.invokeExact(object);
+            } catch (Throwable e) {
                 throw new ValidationException(e);
             }
+            if (value instanceof String string) {
+                return !string.isEmpty();
+            }
+            return value != null && StringUtils.hasLength(value.toString());
+        }
+
+        private static MethodHandle getter(Class<?> type, String name) {
+            for (Class<?> declaring = type; declaring != null; declaring = declaring.getSuperclass()) {
+                try {
+                    Field field = declaring.getDeclaredField(name);
+                    return MethodHandles.privateLookupIn(declaring, MethodHandles.lookup())
+                            .unreflectGetter(field)
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                } catch (NoSuchFieldException e) {
+                    // declared by a super class
+                } catch (IllegalAccessException e) {
+                    throw new ValidationException(e);
+                }
+            }
+            throw new ValidationException("No field " + name + " in " + type.getName());
         }
     }
 
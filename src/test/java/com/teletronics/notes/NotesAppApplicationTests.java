@@ -3,7 +3,11 @@ package com.teletronics.notes;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+		"notes.search.build-on-startup=false",
+		"notes.tags.build-on-startup=false",
+		"notes.indexes.ensure-on-startup=false"
+})
 class NotesAppApplicationTests {
 
 	@Test
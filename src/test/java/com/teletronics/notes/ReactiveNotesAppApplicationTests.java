@@ -0,0 +1,31 @@
+package com.teletronics.notes;
+
+import com.teletronics.notes.controllers.NoteController;
+import com.teletronics.notes.controllers.ReactiveNoteController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+		"notes.search.build-on-startup=false",
+		"notes.tags.build-on-startup=false",
+		"notes.indexes.ensure-on-startup=false"
+})
+@ActiveProfiles("reactive")
+class ReactiveNotesAppApplicationTests {
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void contextLoads() {
+		assertEquals(1, context.getBeansOfType(ReactiveNoteController.class).size());
+		assertTrue(context.getBeansOfType(NoteController.class).isEmpty());
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.teletronics.notes.configs;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteRepository;
+import com.teletronics.notes.services.NoteService;
+import com.teletronics.notes.services.NotesVersionCache;
+import org.bson.Document;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({CacheConfig.class, NoteService.class, NotesVersionCache.class, NoteTextCompression.class, CacheConfigTest.Conversions.class})
+public class CacheConfigTest {
+
+    // converts the durations of the @Value settings, as Spring Boot does
+    @Configuration
+    static class Conversions {
+        @Bean
+        ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+    }
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @MockBean
+    private NoteRepository noteRepository;
+
+    @MockBean
+    private MongoTemplate mongoTemplate;
+
+    @MockBean
+    private NoteMetrics noteMetrics;
+
+    @Test
+    void getNoteText_ReadsThroughCache_AndIsEvictedOnSaveAndDelete() throws Exception {
+        // the cache is shared by the tests of the context
+        CacheStats before = stats();
+        when(noteRepository.findStoredTextById("1"))
+                .thenReturn(Optional.of(new Document("text", "note is just a note")), Optional.of(new Document("text", "edited note")));
+
+        assertEquals("note is just a note", noteService.getNoteText("1").getText());
+        assertEquals("note is just a note", noteService.getNoteText("1").getText());
+        verify(noteRepository, times(1)).findStoredTextById("1");
+
+        Note note = new Note();
+        note.setId("1");
+        eventPublisher.publishEvent(new NoteSavedEvent(note));
+        assertEquals("edited note", noteService.getNoteText("1").getText());
+        verify(noteRepository, times(2)).findStoredTextById("1");
+
+        eventPublisher.publishEvent(new NoteDeletedEvent("1"));
+        noteService.getNoteText("1");
+        verify(noteRepository, times(3)).findStoredTextById("1");
+
+        CacheStats stats = stats().minus(before);
+        assertEquals(1, stats.hitCount());
+        assertEquals(3, stats.missCount());
+    }
+
+    @Test
+    void getNoteTextVersion_ReadsCachedTextOrVersionOnly() throws Exception {
+        when(noteRepository.findVersionById("2")).thenReturn(Optional.of(new Document("version", 4L)));
+        when(noteRepository.findStoredTextById("2"))
+                .thenReturn(Optional.of(new Document("text", "note is just a note").append("version", 5L)));
+
+        assertEquals(4L, noteService.getNoteTextVersion("2"));
+        verify(noteRepository, never()).findStoredTextById("2");
+
+        noteService.getNoteText("2");
+        assertEquals(5L, noteService.getNoteTextVersion("2"));
+        verify(noteRepository, times(1)).findVersionById("2");
+    }
+
+    @Test
+    void withoutChangeStream_cachedTextsExpire() {
+        assertEquals(Optional.of(Duration.ofSeconds(30)), expireAfterWrite(cacheManager));
+    }
+
+    @Nested
+    @TestPropertySource(properties = "notes.changes.enabled=true")
+    class WithChangeStream {
+
+        @Autowired
+        private CacheManager cacheManager;
+
+        @Test
+        void cachedTextsDoNotExpire() {
+            assertEquals(Optional.empty(), expireAfterWrite(cacheManager));
+        }
+    }
+
+    private CacheStats stats() {
+        return nativeCache(cacheManager).stats();
+    }
+
+    private static Optional<Duration> expireAfterWrite(CacheManager cacheManager) {
+        return nativeCache(cacheManager).policy().expireAfterWrite().map(Policy.FixedExpiration::getExpiresAfter);
+    }
+
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(CacheManager cacheManager) {
+        return ((CaffeineCache) cacheManager.getCache(CacheConfig.NOTE_TEXT_CACHE)).getNativeCache();
+    }
+}
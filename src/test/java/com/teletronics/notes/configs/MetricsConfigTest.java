@@ -0,0 +1,56 @@
+package com.teletronics.notes.configs;
+
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MetricsConfigTest {
+
+    @Test
+    void givenRepositoryMethods_queryType_TellsProjectedFromTagFiltered() throws Exception {
+        assertEquals(MetricsConfig.PROJECTED,
+                MetricsConfig.queryType(NoteRepository.class.getMethod("findAllProjectedBy", Pageable.class)));
+        assertEquals(MetricsConfig.PROJECTED,
+                MetricsConfig.queryType(NoteRepository.class.getMethod("findSliceAfter", LocalDateTime.class, ObjectId.class, Pageable.class)));
+        assertEquals(MetricsConfig.PROJECTED,
+                MetricsConfig.queryType(NoteRepository.class.getMethod("findStoredTextById", String.class)));
+        assertEquals(MetricsConfig.TAG_FILTERED,
+                MetricsConfig.queryType(NoteRepository.class.getMethod("findByTagsIn", Set.class, Pageable.class)));
+        assertEquals(MetricsConfig.ENTITY,
+                MetricsConfig.queryType(NoteRepository.class.getMethod("findById", Object.class)));
+        assertEquals(MetricsConfig.ENTITY,
+                MetricsConfig.queryType(NoteRepository.class.getMethod("removeById", String.class)));
+    }
+
+    @Test
+    void givenSavedNote_onNoteSaved_RecordsTextSizeAndUniqueWords() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        NoteMetrics noteMetrics = new NoteMetrics(registry);
+        Note note = new Note();
+        note.setText("note is just a note");
+        note.setStats(Map.of("note", 2, "is", 1, "just", 1, "a", 1));
+
+        noteMetrics.onNoteSaved(new NoteSavedEvent(note));
+        noteMetrics.recordError("save", new IllegalStateException());
+
+        DistributionSummary textSize = registry.get("notes.text.size").tag("source", "note").summary();
+        assertEquals(1, textSize.count());
+        assertEquals(19, textSize.totalAmount());
+        assertEquals(4, registry.get("notes.stats.unique.words").tag("source", "note").summary().totalAmount());
+        assertEquals(1, registry.get("notes.service.errors")
+                .tags("operation", "save", "exception", "IllegalStateException")
+                .counter()
+                .count());
+    }
+}
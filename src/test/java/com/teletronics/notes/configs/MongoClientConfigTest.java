@@ -0,0 +1,32 @@
+package com.teletronics.notes.configs;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.connection.ConnectionPoolSettings;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MongoClientConfigTest {
+
+    @Test
+    void connectionPoolCustomizer_AppliesPoolSettings() {
+        MongoClientConfig mongoClientConfig = new MongoClientConfig();
+        ReflectionTestUtils.setField(mongoClientConfig, "poolMaxSize", 200);
+        ReflectionTestUtils.setField(mongoClientConfig, "poolMinSize", 10);
+        ReflectionTestUtils.setField(mongoClientConfig, "poolMaxConnecting", 4);
+        ReflectionTestUtils.setField(mongoClientConfig, "poolMaxWait", Duration.ofSeconds(2));
+        MongoClientSettings.Builder builder = MongoClientSettings.builder();
+
+        mongoClientConfig.connectionPoolCustomizer().customize(builder);
+
+        ConnectionPoolSettings pool = builder.build().getConnectionPoolSettings();
+        assertEquals(200, pool.getMaxSize());
+        assertEquals(10, pool.getMinSize());
+        assertEquals(4, pool.getMaxConnecting());
+        assertEquals(2000, pool.getMaxWaitTime(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,29 @@
+package com.teletronics.notes.configs;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MongoConfigTest {
+
+    @Test
+    void givenIndexScanPlan_hasCollectionScan_ReturnsFalse() {
+        Document plan = Document.parse("{ stage: 'LIMIT', inputStage: { stage: 'FETCH', inputStage: "
+                + "{ stage: 'IXSCAN', indexName: 'createdDate_id' } } }");
+
+        assertFalse(MongoConfig.hasCollectionScan(plan));
+    }
+
+    @Test
+    void givenNestedCollectionScan_hasCollectionScan_ReturnsTrue() {
+        Document plan = Document.parse("{ stage: 'SORT', inputStage: { stage: 'OR', inputStages: [ "
+                + "{ stage: 'IXSCAN', indexName: 'createdDate_id' }, { stage: 'COLLSCAN' } ] } }");
+
+        assertTrue(MongoConfig.hasCollectionScan(plan));
+        assertTrue(MongoConfig.hasCollectionScan(List.of(plan)));
+    }
+}
@@ -0,0 +1,107 @@
+package com.teletronics.notes.configs;
+
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.StoredNoteText;
+import com.teletronics.notes.utils.TextCompression;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteTextCompressionTest {
+    private static final String LONG_TEXT = "note is just a note, ünïcödé nôte ".repeat(100);
+
+    private final NoteTextCompression noteTextCompression = new NoteTextCompression();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(noteTextCompression, "enabled", true);
+        ReflectionTestUtils.setField(noteTextCompression, "minLength", 1024);
+    }
+
+    @Test
+    void givenLongText_onBeforeSave_StoresItCompressedWithCodec() {
+        Note note = new Note();
+        note.setText(LONG_TEXT);
+        Document document = new Document("text", LONG_TEXT);
+
+        noteTextCompression.onBeforeSave(note, document, "notes");
+
+        Binary stored = (Binary) document.get("text");
+        assertEquals(NoteTextCompression.BINARY_SUBTYPE, stored.getType());
+        assertTrue(stored.length() < LONG_TEXT.length() / 4);
+        assertEquals("lz4", document.get(NoteTextCompression.CODEC_FIELD));
+        assertEquals(LONG_TEXT, read(document).getText());
+    }
+
+    @Test
+    void givenStoredTexts_read_DecompressesOnlyTheText() {
+        String longText = LONG_TEXT.repeat(50);
+        byte[] compressed = TextCompression.compress(longText);
+        Document stored = new Document("_id", "1")
+                .append("title", "note")
+                .append("text", new Binary(NoteTextCompression.BINARY_SUBTYPE, compressed));
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        Note note = read(stored);
+        assertDoesNotThrow(() -> StoredNoteText.of(stored).writeTo(written));
+
+        assertEquals(longText, note.getText());
+        assertEquals("note", note.getTitle());
+        assertEquals(longText, written.toString(StandardCharsets.UTF_8));
+        assertEquals("note", read(new Document("_id", "1").append("text", "note")).getText());
+    }
+
+    private static Note read(Document document) {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter.read(Note.class, document);
+    }
+
+    @Test
+    void givenShortOrIncompressibleText_onBeforeSave_StoresItAsIs() {
+        StringBuilder random = new StringBuilder();
+        new Random(42).ints(2048, 0x4E00, 0x9FFF).forEach(random::appendCodePoint);
+        for (String text : new String[]{"note is just a note", random.toString()}) {
+            Note note = new Note();
+            note.setText(text);
+            Document document = new Document("text", text);
+
+            noteTextCompression.onBeforeSave(note, document, "notes");
+
+            assertEquals(new Document("text", text), document);
+        }
+    }
+
+    @Test
+    void setText_SetsCodecOnlyForCompressedText() {
+        Document compressed = noteTextCompression.setText(new Update(), LONG_TEXT).getUpdateObject();
+        Document plain = noteTextCompression.setText(new Update(), "note is just a note").getUpdateObject();
+        ReflectionTestUtils.setField(noteTextCompression, "enabled", false);
+        Document disabled = noteTextCompression.setText(new Update(), LONG_TEXT).getUpdateObject();
+
+        assertInstanceOf(Binary.class, compressed.get("$set", Document.class).get("text"));
+        assertEquals("lz4", compressed.get("$set", Document.class).get(NoteTextCompression.CODEC_FIELD));
+        assertEquals("note is just a note", plain.get("$set", Document.class).get("text"));
+        assertTrue(plain.get("$unset", Document.class).containsKey(NoteTextCompression.CODEC_FIELD));
+        assertEquals(LONG_TEXT, disabled.get("$set", Document.class).get("text"));
+        assertTrue(disabled.get("$unset", Document.class).containsKey(NoteTextCompression.CODEC_FIELD));
+    }
+}
@@ -1,12 +1,31 @@
 package com.teletronics.notes.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teletronics.notes.configs.NoteMetrics;
+import com.teletronics.notes.configs.NoteTextCompression;
+import com.teletronics.notes.dtos.BulkItemResultDto;
+import com.teletronics.notes.dtos.BulkResponseDto;
 import com.teletronics.notes.dtos.NoteDto;
 import com.teletronics.notes.exceptions.ResourceNotFoundException;
+import com.teletronics.notes.exceptions.SearchUnavailableException;
+import com.teletronics.notes.exceptions.StatsLimitExceededException;
+import com.teletronics.notes.exceptions.VersionConflictException;
 import com.teletronics.notes.mappers.NoteMapper;
 import com.teletronics.notes.models.Note;
 import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.repositories.NoteTextProjection;
+import com.teletronics.notes.repositories.StoredNoteText;
+import com.teletronics.notes.search.TagExpression;
+import com.teletronics.notes.services.NoteBulkService;
+import com.teletronics.notes.services.NoteExportService;
+import com.teletronics.notes.services.NoteSearchService;
 import com.teletronics.notes.services.NoteService;
+import com.teletronics.notes.services.NoteTagService;
+import com.teletronics.notes.utils.NoteCursor;
+import com.teletronics.notes.utils.TextCompression;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -16,24 +35,39 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.*;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.mock;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(NoteController.class)
+@WebMvcTest(controllers = NoteController.class, properties = "notes.export.max-concurrent=1")
 public class NoteControllerTest {
 
     @Autowired
@@ -45,6 +79,21 @@ public class NoteControllerTest {
     @MockBean
     private NoteMapper noteMapper;
 
+    @MockBean
+    private NoteSearchService noteSearchService;
+
+    @MockBean
+    private NoteTagService noteTagService;
+
+    @MockBean
+    private NoteBulkService noteBulkService;
+
+    @MockBean
+    private NoteExportService noteExportService;
+
+    @MockBean
+    private NoteMetrics noteMetrics;
+
     @InjectMocks
     private NoteController noteController;
 
@@ -83,6 +132,18 @@ public class NoteControllerTest {
                         .andExpect(status().isCreated());
     }
 
+    @Test
+    void on_create_GivenNoTitleAndNoText_ReturnsBadRequest() throws Exception {
+        NoteDto noteDto = new NoteDto();
+        noteDto.setTitle("");
+
+        mockMvc.perform(post("/api/notes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(noteDto)))
+                .andExpect(status().isBadRequest());
+        verify(noteService, never()).save(any());
+    }
+
     @Test
     void on_update_GivenValidIdAndNoteDto_ReturnsUpdatedNoteDto() throws Exception {
         // Arrange
@@ -91,10 +152,9 @@ public class NoteControllerTest {
         noteDto.setTitle("Updated Title");
         noteDto.setText("Updated Text");
 
-        Note existingNote = new Note();
-        existingNote.setId(id);
-        existingNote.setTitle("Original Title");
-        existingNote.setText("Original Text");
+        Note changes = new Note();
+        changes.setTitle("Updated Title");
+        changes.setText("Updated Text");
 
         Note updatedNote = new Note();
         updatedNote.setId(id);
@@ -106,9 +166,8 @@ public class NoteControllerTest {
         updatedNoteDto.setTitle("Updated Title");
         updatedNoteDto.setText("Updated Text");
 
-        when(noteService.findById(id)).thenReturn(existingNote);
-        when(noteMapper.mapToNote(existingNote, noteDto)).thenReturn(updatedNote);
-        when(noteService.save(updatedNote)).thenReturn(updatedNote);
+        when(noteMapper.mapToNote(isNull(), any(NoteDto.class))).thenReturn(changes);
+        when(noteService.update(id, changes, null)).thenReturn(updatedNote);
         when(noteMapper.mapFromNote(updatedNote)).thenReturn(updatedNoteDto);
 
         mockMvc.perform(put("/api/notes/{id}", id)
@@ -117,26 +176,82 @@ public class NoteControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void on_update_GivenMatchingIfMatch_ReturnsNewVersionETag() throws Exception {
+        NoteDto noteDto = new NoteDto();
+        noteDto.setTitle("Updated Title");
+        Note changes = new Note();
+        Note updatedNote = new Note();
+        updatedNote.setVersion(4L);
+        when(noteMapper.mapToNote(isNull(), any(NoteDto.class))).thenReturn(changes);
+        when(noteService.update("1", changes, 3L)).thenReturn(updatedNote);
+
+        mockMvc.perform(put("/api/notes/{id}", "1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(noteDto)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+    }
+
+    @Test
+    void on_update_GivenStaleIfMatch_ReturnsPreconditionFailed() throws Exception {
+        NoteDto noteDto = new NoteDto();
+        noteDto.setTitle("Updated Title");
+        Note changes = new Note();
+        when(noteMapper.mapToNote(isNull(), any(NoteDto.class))).thenReturn(changes);
+        when(noteService.update("1", changes, 3L)).thenThrow(new VersionConflictException("Note was modified since version 3"));
+
+        mockMvc.perform(put("/api/notes/{id}", "1")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(noteDto)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void on_update_GivenWeakIfMatch_ReturnsPreconditionFailed() throws Exception {
+        NoteDto noteDto = new NoteDto();
+        noteDto.setTitle("Updated Title");
+
+        mockMvc.perform(put("/api/notes/{id}", "1")
+                        .header("If-Match", "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(noteDto)))
+                .andExpect(status().isPreconditionFailed());
+        verify(noteService, never()).update(any(), any(), any());
+    }
+
+    @Test
+    void on_update_GivenStaleVersionInBody_ReturnsConflict() throws Exception {
+        NoteDto noteDto = new NoteDto();
+        noteDto.setTitle("Updated Title");
+        noteDto.setVersion(3L);
+        Note changes = new Note();
+        when(noteMapper.mapToNote(isNull(), any(NoteDto.class))).thenReturn(changes);
+        when(noteService.update("1", changes, 3L)).thenThrow(new VersionConflictException("Note was modified since version 3"));
+
+        mockMvc.perform(put("/api/notes/{id}", "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(noteDto)))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void on_delete_GivenNoteValidId_DeletesNote() throws Exception {
         String id = "1";
-        Note note = new Note();
-        note.setId(id);
-        note.setTitle("Title");
-        note.setText("Text");
-
-        when(noteService.findById(id)).thenReturn(note);
         mockMvc.perform(delete("/api/notes/{id}", id)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNoContent());
 
-        verify(noteService).delete(note);
+        verify(noteService).deleteById(id);
+        verify(noteService, never()).findById(id);
     }
 
     @Test
     void on_delete_GivenInvalidNoteId_ThrowsResourceNotFoundException() throws Exception {
         String invalidId = "invalid-id";
-        when(noteService.findById(invalidId)).thenThrow(new ResourceNotFoundException("Note not found for the given id"));
+        doThrow(new ResourceNotFoundException("Note not found for the given id")).when(noteService).deleteById(invalidId);
         mockMvc.perform(delete("/api/notes/{id}", invalidId)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
@@ -146,15 +261,8 @@ public class NoteControllerTest {
     void givenNoTags_findAll_ReturnsAllProjectedNotes() throws Exception {
         Set<String> tags = Set.of();
         Pageable pageable = Pageable.unpaged();
-        NoteProjection note1 = mock(NoteProjection.class);
-        when(note1.getId()).thenReturn("1");
-        when(note1.getTitle()).thenReturn("First Note");
-        when(note1.getCreatedDate()).thenReturn(LocalDateTime.now());
-
-        NoteProjection note2 = mock(NoteProjection.class);
-        when(note2.getId()).thenReturn("2");
-        when(note2.getTitle()).thenReturn("Second Note");
-        when(note1.getCreatedDate()).thenReturn(LocalDateTime.now().minusDays(2));
+        NoteProjection note1 = projection("1", "First Note", LocalDateTime.now());
+        NoteProjection note2 = projection("2", "Second Note", LocalDateTime.now().minusDays(2));
 
         List<NoteProjection> projectedNotes = Arrays.asList(note1, note2);
 
@@ -162,16 +270,8 @@ public class NoteControllerTest {
 
         Page<NoteProjection> projectionPage = new PageImpl<>(projectedNotes, PageRequest.of(0, 2), 5);
 
-        List<NoteDto> noteDtos = projectedNotes.stream()
-                .map(projection -> new NoteDto(projection.getId(), projection.getTitle(),null,null,null,null))
-                .collect(Collectors.toList());
-        Page<NoteDto> dtoPage = new PageImpl<>(noteDtos, PageRequest.of(0, 2), 5);
-
         when(noteService.findAll(any(), eq(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "createdDate")))))
                 .thenReturn(projectionPage);
-        for (int i = 0; i < projectedNotes.size(); i++) {
-            when(noteMapper.mapFromNoteProjection(projectedNotes.get(i))).thenReturn(noteDtos.get(i));
-        }
 
         mockMvc.perform(get("/api/notes")
                         .param("pageNumber", "0")
@@ -180,6 +280,8 @@ public class NoteControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content.length()").value(2))
                 .andExpect(jsonPath("$.content[0].id").value("1"))
+                .andExpect(jsonPath("$.content[0].title").value("First Note"))
+                .andExpect(jsonPath("$.content[0].text").doesNotExist())
                 .andExpect(jsonPath("$.content[1].id").value("2"))
                 .andExpect(jsonPath("$.totalElements").value(5));
     }
@@ -188,15 +290,8 @@ public class NoteControllerTest {
     void givenTags_findAll_ReturnsAllProjectedNotes() throws Exception {
         Set<String> tags = Set.of();
         Pageable pageable = Pageable.unpaged();
-        NoteProjection note1 = mock(NoteProjection.class);
-        when(note1.getId()).thenReturn("1");
-        when(note1.getTitle()).thenReturn("First Note");
-        when(note1.getCreatedDate()).thenReturn(LocalDateTime.now());
-
-        NoteProjection note2 = mock(NoteProjection.class);
-        when(note2.getId()).thenReturn("2");
-        when(note2.getTitle()).thenReturn("Second Note");
-        when(note1.getCreatedDate()).thenReturn(LocalDateTime.now().minusDays(2));
+        NoteProjection note1 = projection("1", "First Note", LocalDateTime.now());
+        NoteProjection note2 = projection("2", "Second Note", LocalDateTime.now().minusDays(2));
 
         List<NoteProjection> projectedNotes = Arrays.asList(note1, note2);
 
@@ -204,16 +299,8 @@ public class NoteControllerTest {
 
         Page<NoteProjection> projectionPage = new PageImpl<>(projectedNotes, PageRequest.of(0, 2), 5);
 
-        List<NoteDto> noteDtos = projectedNotes.stream()
-                .map(projection -> new NoteDto(projection.getId(), projection.getTitle(),null,null,null,null))
-                .collect(Collectors.toList());
-        Page<NoteDto> dtoPage = new PageImpl<>(noteDtos, PageRequest.of(0, 2), 5);
-
         when(noteService.findAll(any(), eq(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "createdDate")))))
                 .thenReturn(projectionPage);
-        for (int i = 0; i < projectedNotes.size(); i++) {
-            when(noteMapper.mapFromNoteProjection(projectedNotes.get(i))).thenReturn(noteDtos.get(i));
-        }
 
         mockMvc.perform(get("/api/notes")
                         .param("tags", "IMPORTANT,BUSINESS")
@@ -227,6 +314,152 @@ public class NoteControllerTest {
                 .andExpect(jsonPath("$.totalElements").value(5));
     }
 
+    @Test
+    void givenTagQuery_findAll_ReturnsNotesOfTagIndex() throws Exception {
+        Page<NoteProjection> projectionPage = new PageImpl<>(List.of(projection("2", "Second Note", null)),
+                PageRequest.of(0, 5), 1);
+        when(noteTagService.findAll(eq(TagExpression.parse("BUSINESS AND NOT PERSONAL")),
+                eq(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "createdDate")))))
+                .thenReturn(projectionPage);
+
+        mockMvc.perform(get("/api/notes")
+                        .param("tagQuery", "business and not personal"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value("2"))
+                .andExpect(jsonPath("$.totalElements").value(1));
+        verify(noteService, never()).findAll(any(), any());
+    }
+
+    @Test
+    void givenInvalidTagQuery_findAll_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/notes").param("tagQuery", "BUSINESS AND URGENT"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/notes").param("tags", "BUSINESS").param("tagQuery", "PERSONAL"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void on_countByTag_ReturnsCountOfEveryTag() throws Exception {
+        when(noteService.getNotesVersion()).thenReturn("8-1930b7c6e00");
+        when(noteTagService.countByTag()).thenReturn(Map.of("BUSINESS", 3L, "PERSONAL", 0L, "IMPORTANT", 1L));
+
+        mockMvc.perform(get("/api/notes/tags/counts"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"8-1930b7c6e00\""))
+                .andExpect(jsonPath("$.BUSINESS").value(3))
+                .andExpect(jsonPath("$.PERSONAL").value(0));
+    }
+
+    @Test
+    void givenCursor_findAllAfter_ReturnsSliceWithNextCursor() throws Exception {
+        NoteCursor cursor = new NoteCursor(LocalDateTime.of(2024, 11, 5, 10, 0), new ObjectId());
+        NoteCursor last = new NoteCursor(LocalDateTime.of(2024, 11, 4, 9, 30), new ObjectId());
+        NoteProjection note = projection(last.id().toHexString(), "Note", last.createdDate());
+        when(noteService.findAllAfter(any(), eq(cursor), eq(1)))
+                .thenReturn(new SliceImpl<>(List.of(note), PageRequest.of(0, 1), true));
+
+        mockMvc.perform(get("/api/notes")
+                        .param("after", cursor.encode())
+                        .param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value(last.encode()))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    @Test
+    void givenNotesWithoutKeyOnPageBoundary_findAllAfter_SkipsThemInNextCursor() throws Exception {
+        NoteCursor keyed = new NoteCursor(LocalDateTime.of(2024, 11, 4, 9, 30), new ObjectId());
+        List<NoteProjection> firstPage = List.of(
+                projection(keyed.id().toHexString(), "Note", keyed.createdDate()),
+                projection("imported-note", "Imported", LocalDateTime.of(2024, 11, 3, 8, 0)));
+        List<NoteProjection> secondPage = List.of(
+                projection(new ObjectId().toHexString(), "Before auditing", null),
+                projection("legacy-note", "Legacy", null));
+        NoteCursor afterFirst = new NoteCursor(keyed.createdDate(), keyed.id(), 1);
+        when(noteService.findAllAfter(any(), isNull(), eq(2)))
+                .thenReturn(new SliceImpl<>(firstPage, PageRequest.of(0, 2), true));
+        when(noteService.findAllAfter(any(), eq(afterFirst), eq(2)))
+                .thenReturn(new SliceImpl<>(secondPage, PageRequest.of(0, 2), true));
+
+        mockMvc.perform(get("/api/notes").param("after", "").param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").value(afterFirst.encode()));
+        mockMvc.perform(get("/api/notes").param("after", afterFirst.encode()).param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[1].id").value("legacy-note"))
+                .andExpect(jsonPath("$.nextCursor").value(new NoteCursor(keyed.createdDate(), keyed.id(), 3).encode()));
+    }
+
+    @Test
+    void givenInvalidCursor_findAllAfter_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/notes")
+                        .param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void givenCurrentETag_findNoteText_ReturnsNotModified() throws Exception {
+        NoteTextProjection note = new StoredNoteText("note is just a nöte", 3L);
+        when(noteService.getNoteText("1")).thenReturn(note);
+
+        String etag = mockMvc.perform(get("/api/notes/1/text"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/plain;charset=UTF-8"))
+                .andExpect(content().string("note is just a nöte"))
+                .andExpect(header().string("ETag", "\"3\""))
+                .andReturn().getResponse().getHeader("ETag");
+
+        when(noteService.getNoteTextVersion("1")).thenReturn(3L);
+        mockMvc.perform(get("/api/notes/1/text").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(noteService, times(1)).getNoteText("1");
+    }
+
+    @Test
+    void givenCompressedText_findNoteText_DecompressesItOnRequestThread() throws Exception {
+        String text = "note is just a nöte ".repeat(10000);
+        Document document = new Document("version", 2L)
+                .append("text", new Binary(NoteTextCompression.BINARY_SUBTYPE, TextCompression.compress(text)));
+        when(noteService.getNoteText("1")).thenReturn(StoredNoteText.of(document));
+
+        mockMvc.perform(get("/api/notes/1/text"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/plain;charset=UTF-8"))
+                .andExpect(content().string(text))
+                .andExpect(header().string("ETag", "\"2\""));
+    }
+
+    @Test
+    void givenUnchangedNotes_findAll_ReturnsNotModifiedWithoutReading() throws Exception {
+        when(noteService.getNotesVersion()).thenReturn("8-1930b7c6e00");
+
+        mockMvc.perform(get("/api/notes").header("If-None-Match", "\"8-1930b7c6e00\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"8-1930b7c6e00\""));
+        verify(noteService, never()).findAll(any(), any());
+    }
+
+    @Test
+    void givenNdjsonOperations_bulk_ReturnsItemResults() throws Exception {
+        BulkResponseDto response = new BulkResponseDto(true, List.of(
+                new BulkItemResultDto(1, "create", "1", 201, null),
+                new BulkItemResultDto(2, "delete", "2", 404, "Note not found for the given id")));
+        when(noteBulkService.process(any(Reader.class))).thenReturn(response);
+
+        mockMvc.perform(post("/api/notes/_bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{\"op\":\"create\",\"note\":{\"title\":\"Title\"}}\n{\"op\":\"delete\",\"id\":\"2\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.errors").value(true))
+                .andExpect(jsonPath("$.items[0].status").value(201))
+                .andExpect(jsonPath("$.items[1].error").value("Note not found for the given id"));
+    }
+
     @Test
     public void givenAText_Get_Stats() throws Exception {
         String inputText = "note is just a note";
@@ -246,5 +479,143 @@ public class NoteControllerTest {
                 .andExpect(jsonPath("$.is").value(1))
                 .andExpect(jsonPath("$.just").value(1))
                 .andExpect(jsonPath("$.a").value(1));
+        verify(noteMetrics).recordStatsRequest(inputText.length(), 4);
+    }
+
+    @Test
+    public void givenAText_GetStatsStreaming() throws Exception {
+        Map<String, Integer> mockResponse = Map.of("note", 2);
+        when(noteService.findUniqueOccurrence(any(Reader.class))).thenReturn(mockResponse);
+        mockMvc.perform(post("/api/notes/stats")
+                        .param("stream", "true")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("note note"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.note").value(2));
+    }
+
+    @Test
+    public void givenTooManyUniqueWords_GetStatsStreaming_ReturnsPayloadTooLarge() throws Exception {
+        when(noteService.findUniqueOccurrence(any(Reader.class)))
+                .thenThrow(new StatsLimitExceededException("Text has more than 1 unique words"));
+        mockMvc.perform(post("/api/notes/stats")
+                        .param("stream", "true")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("one two"))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    public void givenValidId_GetNoteStats() throws Exception {
+        String id = "1";
+        when(noteService.getNoteStats(id)).thenReturn(Map.of("note", 2, "a", 1));
+        mockMvc.perform(get("/api/notes/{id}/stats", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.note").value(2))
+                .andExpect(jsonPath("$.a").value(1));
+    }
+
+    @Test
+    public void givenInvalidId_GetNoteStats_ReturnsNotFound() throws Exception {
+        String invalidId = "invalid-id";
+        when(noteService.getNoteStats(invalidId)).thenThrow(new ResourceNotFoundException("Note not found for the given id"));
+        mockMvc.perform(get("/api/notes/{id}/stats", invalidId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void givenQuery_Search_ReturnsRankedPage() throws Exception {
+        NoteProjection note1 = projection("2", "Rabbit", null);
+        NoteProjection note2 = projection("1", "Jungle", null);
+        Page<NoteProjection> projectionPage = new PageImpl<>(List.of(note1, note2), PageRequest.of(0, 2), 3);
+
+        when(noteSearchService.search("rabbit", PageRequest.of(0, 2))).thenReturn(projectionPage);
+
+        mockMvc.perform(get("/api/notes/search")
+                        .param("q", "rabbit")
+                        .param("pageNumber", "0")
+                        .param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value("2"))
+                .andExpect(jsonPath("$.content[1].id").value("1"))
+                .andExpect(jsonPath("$.totalElements").value(3));
+    }
+
+    @Test
+    public void givenIndexNotReady_Search_ReturnsServiceUnavailable() throws Exception {
+        when(noteSearchService.search(eq("rabbit"), any())).thenThrow(new SearchUnavailableException("Search index is not ready yet"));
+        mockMvc.perform(get("/api/notes/search").param("q", "rabbit"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void on_export_GivenGzip_StreamsCompressedNotes() throws Exception {
+        String lines = "{\"id\":\"1\"}\n{\"id\":\"2\"}\n";
+        when(noteExportService.export(eq(Set.of("BUSINESS")), eq(LocalDateTime.of(2024, 11, 1, 0, 0)), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(2, OutputStream.class).write(lines.getBytes());
+                    return 2L;
+                });
+
+        MvcResult result = mockMvc.perform(get("/api/notes/_export")
+                        .param("tags", "BUSINESS")
+                        .param("modifiedSince", "2024-11-01T00:00:00")
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(lines, new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void givenExportRunning_export_RejectsNextOnExportPool() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(noteExportService.export(any(), any(), any())).thenAnswer(invocation -> {
+            running.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return 0L;
+        });
+
+        MvcResult first = mockMvc.perform(get("/api/notes/_export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        MvcResult second = mockMvc.perform(get("/api/notes/_export")).andReturn();
+        // the container dispatches the rejection to ControllerExceptionHandler, MockMvc does not
+        assertInstanceOf(TaskRejectedException.class,
+                WebAsyncUtils.getAsyncManager(second.getRequest()).getConcurrentResult());
+
+        release.countDown();
+        mockMvc.perform(asyncDispatch(first))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"));
+    }
+
+    @Test
+    void acceptsGzip_ReadsQValues() {
+        assertTrue(NoteController.acceptsGzip("gzip"));
+        assertTrue(NoteController.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(NoteController.acceptsGzip("*"));
+        assertFalse(NoteController.acceptsGzip(null));
+        assertFalse(NoteController.acceptsGzip("gzip;q=0"));
+        assertFalse(NoteController.acceptsGzip("x-gzip"));
+        assertFalse(NoteController.acceptsGzip("*;q=1, gzip;q=0.000"));
+        assertFalse(NoteController.acceptsGzip("identity"));
+    }
+
+    private static NoteProjection projection(String id, String title, LocalDateTime createdDate) {
+        Map<String, Object> note = new HashMap<>();
+        note.put("id", id);
+        note.put("title", title);
+        note.put("createdDate", createdDate);
+        return new SpelAwareProxyProjectionFactory().createProjection(NoteProjection.class, note);
     }
 }
@@ -0,0 +1,299 @@
+package com.teletronics.notes.controllers;
+
+import com.teletronics.notes.configs.NoteMetrics;
+import com.teletronics.notes.dtos.BulkItemResultDto;
+import com.teletronics.notes.dtos.BulkResponseDto;
+import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.exceptions.ResourceNotFoundException;
+import com.teletronics.notes.exceptions.VersionConflictException;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteProjection;
+import com.teletronics.notes.repositories.NoteTextProjection;
+import com.teletronics.notes.search.TagExpression;
+import com.teletronics.notes.services.ReactiveNoteService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(ReactiveNoteController.class)
+@ActiveProfiles("reactive")
+public class ReactiveNoteControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveNoteService noteService;
+
+    @MockBean
+    private NoteMapper noteMapper;
+
+    @MockBean
+    private NoteMetrics noteMetrics;
+
+    @Test
+    void givenNoTags_findAll_ReturnsPage() {
+        NoteProjection note = new SpelAwareProxyProjectionFactory()
+                .createProjection(NoteProjection.class, Map.of("id", "1", "title", "First Note"));
+        when(noteService.getNotesVersion()).thenReturn(Mono.just("8-1930b7c6e00"));
+        when(noteService.findAll(ArgumentMatchers.<Set<String>>isNull(), any()))
+                .thenReturn(Mono.just(new PageImpl<>(List.of(note), PageRequest.of(0, 2), 5)));
+
+        webTestClient.get().uri("/api/notes?pageNumber=0&pageSize=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"8-1930b7c6e00\"")
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo("1")
+                .jsonPath("$.totalElements").isEqualTo(5);
+    }
+
+    @Test
+    void givenTagQuery_findAll_ReturnsMatchingPage() {
+        NoteProjection note = new SpelAwareProxyProjectionFactory()
+                .createProjection(NoteProjection.class, Map.of("id", "1", "title", "First Note"));
+        when(noteService.getNotesVersion()).thenReturn(Mono.just("8-1930b7c6e00"));
+        when(noteService.findAll(any(TagExpression.class), any()))
+                .thenReturn(Mono.just(new PageImpl<>(List.of(note), PageRequest.of(0, 5), 1)));
+
+        webTestClient.get().uri("/api/notes?tagQuery={query}", "BUSINESS AND NOT PERSONAL")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo("1");
+    }
+
+    @Test
+    void givenInvalidTagQuery_findAll_ReturnsBadRequest() {
+        webTestClient.get().uri("/api/notes?tagQuery={query}", "BUSINESS AND")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void givenCurrentETag_findAll_ReturnsNotModified() {
+        when(noteService.getNotesVersion()).thenReturn(Mono.just("8-1930b7c6e00"));
+
+        webTestClient.get().uri("/api/notes")
+                .header("If-None-Match", "\"8-1930b7c6e00\"")
+                .exchange()
+                .expectStatus().isNotModified();
+        verify(noteService, never()).findAll(ArgumentMatchers.<Set<String>>any(), any());
+    }
+
+    @Test
+    void on_countByTag_ReturnsCountOfEveryTag() {
+        when(noteService.getNotesVersion()).thenReturn(Mono.just("8-1930b7c6e00"));
+        when(noteService.countByTag()).thenReturn(Mono.just(Map.of("BUSINESS", 3L, "PERSONAL", 0L)));
+
+        webTestClient.get().uri("/api/notes/tags/counts")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"8-1930b7c6e00\"")
+                .expectBody()
+                .jsonPath("$.BUSINESS").isEqualTo(3)
+                .jsonPath("$.PERSONAL").isEqualTo(0);
+    }
+
+    @Test
+    void givenValidId_findNoteText_ReturnsText() {
+        NoteTextProjection note = mock(NoteTextProjection.class);
+        when(note.getText()).thenReturn("note is just a note");
+        when(note.getVersion()).thenReturn(3L);
+        when(noteService.getNoteText("1")).thenReturn(Mono.just(note));
+
+        webTestClient.get().uri("/api/notes/1/text")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"3\"")
+                .expectBody(String.class).isEqualTo("note is just a note");
+    }
+
+    @Test
+    void givenCurrentETag_findNoteText_ReturnsNotModifiedWithoutReadingText() {
+        when(noteService.getNoteTextVersion("1")).thenReturn(Mono.just(3L));
+
+        webTestClient.get().uri("/api/notes/1/text")
+                .header("If-None-Match", "\"3\"")
+                .exchange()
+                .expectStatus().isNotModified();
+        verify(noteService, never()).getNoteText("1");
+    }
+
+    @Test
+    void givenInvalidId_findNoteStats_ReturnsNotFound() {
+        when(noteService.getNoteStats("1")).thenReturn(Mono.error(new ResourceNotFoundException("Note not found for the given id")));
+
+        webTestClient.get().uri("/api/notes/1/stats")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Note not found for the given id")
+                .jsonPath("$.description").isEqualTo("uri=/api/notes/1/stats");
+    }
+
+    @Test
+    void givenStaleIfMatch_update_ReturnsPreconditionFailed() {
+        when(noteMapper.mapToNote(isNull(), any(NoteDto.class))).thenReturn(new Note());
+        when(noteService.update(eq("1"), any(Note.class), eq(3L)))
+                .thenReturn(Mono.error(new VersionConflictException("Note was modified since version 3")));
+
+        webTestClient.put().uri("/api/notes/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "Updated Title"))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void givenEmptyNote_create_ReturnsBadRequest() {
+        webTestClient.post().uri("/api/notes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("tags", List.of("UNKNOWN")))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void givenStreamedText_getStatsForStream_ReturnsStats() {
+        when(noteService.countWords(any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(0, Flux.class)
+                .then(Mono.just(Map.of("note", 2))));
+
+        webTestClient.post().uri("/api/notes/stats?stream=true")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("note is just a note")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.note").isEqualTo(2);
+        verify(noteMetrics).recordStatsRequest(19, 1);
+    }
+
+    @Test
+    void givenText_getStatsForText_RecordsStatsRequest() {
+        when(noteService.countWords("note is just a note")).thenReturn(Mono.just(Map.of("note", 2, "is", 1)));
+
+        webTestClient.post().uri("/api/notes/stats")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("note is just a note")
+                .exchange()
+                .expectStatus().isOk();
+        verify(noteMetrics).recordStatsRequest(19, 2);
+    }
+
+    @Test
+    void givenBodiesOverDefaultCodecLimit_getStatsForTextAndCreate_ReadThem() {
+        // over the 256 KB WebFlux reads in memory by default
+        String text = "note ".repeat(100_000);
+        when(noteService.countWords(text)).thenReturn(Mono.just(Map.of("note", 100_000)));
+        when(noteMapper.mapToNote(isNull(), any(NoteDto.class))).thenReturn(new Note());
+        when(noteService.save(any(Note.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(noteMapper.mapFromNote(any(Note.class))).thenReturn(new NoteDto());
+
+        webTestClient.post().uri("/api/notes/stats")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue(text)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.note").isEqualTo(100_000);
+        webTestClient.post().uri("/api/notes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("title", "Long note", "text", text))
+                .exchange()
+                .expectStatus().isCreated();
+        verify(noteMapper).mapToNote(isNull(), argThat((NoteDto note) -> text.equals(note.getText())));
+    }
+
+    @Test
+    void givenNdjsonOperations_bulk_ReturnsItemResults() {
+        BulkResponseDto response = new BulkResponseDto(true, List.of(
+                new BulkItemResultDto(1, "create", "1", 201, null),
+                new BulkItemResultDto(3, "delete", "2", 404, "Note not found for the given id")));
+        List<String> lines = new ArrayList<>();
+        when(noteService.bulk(any())).thenAnswer(invocation -> invocation.<Flux<String>>getArgument(0)
+                .doOnNext(lines::add)
+                .then(Mono.just(response)));
+
+        webTestClient.post().uri("/api/notes/_bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"op\":\"create\",\"note\":{\"title\":\"Title\"}}\n\r\n{\"op\":\"delete\",\"id\":\"2\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.errors").isEqualTo(true)
+                .jsonPath("$.items[0].status").isEqualTo(201)
+                .jsonPath("$.items[1].error").isEqualTo("Note not found for the given id");
+        assertEquals(List.of("{\"op\":\"create\",\"note\":{\"title\":\"Title\"}}", "", "{\"op\":\"delete\",\"id\":\"2\"}"), lines);
+    }
+
+    @Test
+    void on_export_GivenGzip_StreamsCompressedNotes() throws Exception {
+        String lines = "{\"id\":\"1\"}\n{\"id\":\"2\"}\n";
+        when(noteService.export(eq(Set.of("BUSINESS")), eq(LocalDateTime.of(2024, 11, 1, 0, 0))))
+                .thenReturn(Flux.just("{\"id\":\"1\"}\n".getBytes(), "{\"id\":\"2\"}\n".getBytes()));
+
+        byte[] body = webTestClient.get().uri("/api/notes/_export?tags=BUSINESS&modifiedSince=2024-11-01T00:00:00")
+                .header("Accept-Encoding", "gzip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Content-Encoding", "gzip")
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(lines, new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void givenManyLines_gzip_CompressesThemInChunks() throws Exception {
+        Random random = new Random(42);
+        List<String> lines = random.longs(10000)
+                .mapToObj(id -> "{\"id\":\"" + Long.toHexString(id) + "\"}\n")
+                .toList();
+        List<byte[]> chunks = ReactiveNoteController.gzip(Flux.fromIterable(lines).map(String::getBytes))
+                .collectList()
+                .block();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            body.write(chunk);
+        }
+        assertTrue(chunks.size() > 1);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+            assertEquals(String.join("", lines), new String(in.readAllBytes()));
+        }
+    }
+}
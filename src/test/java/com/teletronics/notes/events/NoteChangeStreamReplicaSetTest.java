@@ -0,0 +1,82 @@
+package com.teletronics.notes.events;
+
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import com.teletronics.notes.services.NoteService;
+import com.teletronics.notes.services.NoteTagService;
+import com.teletronics.notes.search.TagExpression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes made straight to the collection, as another instance would, must reach the cache and the tag
+ * index of this one. Needs a replica set, for instance a single node one started with
+ * {@code docker run -d -p 27017:27017 mongo:7 --replSet rs0} and {@code mongosh --eval "rs.initiate()"},
+ * and runs when NOTES_REPLICA_SET_URI points at it.
+ */
+@SpringBootTest(properties = {
+        "spring.data.mongodb.uri=${NOTES_REPLICA_SET_URI}",
+        "notes.search.build-on-startup=false",
+        "notes.tags.build-on-startup=false",
+        "notes.indexes.ensure-on-startup=false",
+        "notes.changes.enabled=true",
+        "notes.changes.instance-id=replica-set-test"
+})
+@EnabledIfEnvironmentVariable(named = "NOTES_REPLICA_SET_URI", matches = ".+")
+public class NoteChangeStreamReplicaSetTest {
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private NoteTagService noteTagService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void givenRemoteWrites_CacheAndTagIndexFollowThem() throws Exception {
+        Note note = new Note();
+        note.setTitle("change stream");
+        note.setText("written elsewhere");
+        note.setTags(Set.of(Tag.IMPORTANT));
+        Note saved = mongoTemplate.insert(note);
+        TagExpression important = TagExpression.parse("IMPORTANT");
+        await(() -> noteTagService.findAll(important, PageRequest.of(0, 100)).stream()
+                .anyMatch(projection -> projection.getId().equals(saved.getId())));
+        assertEquals("written elsewhere", noteService.getNoteText(saved.getId()).getText());
+
+        saved.setText("edited elsewhere");
+        mongoTemplate.save(saved);
+        await(() -> {
+            try {
+                return noteService.getNoteText(saved.getId()).getText().equals("edited elsewhere");
+            } catch (Exception e) {
+                return false;
+            }
+        });
+
+        mongoTemplate.remove(saved);
+        await(() -> noteTagService.findAll(important, PageRequest.of(0, 100)).stream()
+                .noneMatch(projection -> projection.getId().equals(saved.getId())));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Change was not applied in 10 seconds");
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.teletronics.notes.events;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.teletronics.notes.models.Note;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class NoteChangeStreamTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private NoteChangeStream noteChangeStream;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(noteChangeStream, "enabled", true);
+        ReflectionTestUtils.setField(noteChangeStream, "instanceId", "notes-1");
+        ReflectionTestUtils.setField(noteChangeStream, "retryDelay", Duration.ofSeconds(5));
+    }
+
+    @Test
+    void givenLocalAndRemoteChanges_onChange_PublishesRemoteOnesAndKeepsResumeToken() {
+        ObjectId deletedHere = new ObjectId();
+        ObjectId deletedElsewhere = new ObjectId();
+        noteChangeStream.onNoteSaved(new NoteSavedEvent(note("1", 2L)));
+        noteChangeStream.onNoteDeleted(new NoteDeletedEvent(deletedHere.toHexString()));
+
+        noteChangeStream.onChange(change(OperationType.UPDATE, note("1", 2L), null, "a"));
+        noteChangeStream.onChange(change(OperationType.UPDATE, note("1", 3L), null, "b"));
+        noteChangeStream.onChange(change(OperationType.INSERT, note("2", 0L), null, "c"));
+        noteChangeStream.onChange(change(OperationType.DELETE, null, deletedHere, "d"));
+        noteChangeStream.onChange(change(OperationType.DELETE, null, deletedElsewhere, "e"));
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        List<Object> published = events.getAllValues();
+        assertEquals(3L, ((NoteSavedEvent) published.get(0)).note().getVersion());
+        assertEquals("2", ((NoteSavedEvent) published.get(1)).note().getId());
+        assertEquals(new NoteDeletedEvent(deletedElsewhere.toHexString(), true), published.get(2));
+        assertEquals(new BsonDocument("_data", new BsonString("e")), ReflectionTestUtils.getField(noteChangeStream, "resumeToken"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenHistoryLost_onError_RestartsFromNowAndDropsSavedToken() {
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        MongoCollection<BsonDocument> tokens = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection(NoteChangeStream.TOKENS_COLLECTION)).thenReturn(collection);
+        when(collection.withDocumentClass(BsonDocument.class)).thenReturn(tokens);
+        ReflectionTestUtils.setField(noteChangeStream, "container", mock(MessageListenerContainer.class));
+        ReflectionTestUtils.setField(noteChangeStream, "scheduler", scheduler);
+        ReflectionTestUtils.setField(noteChangeStream, "subscription", mock(Subscription.class));
+        ReflectionTestUtils.setField(noteChangeStream, "resumeToken", new BsonDocument("_data", new BsonString("a")));
+        ReflectionTestUtils.setField(noteChangeStream, "savedToken", new BsonDocument("_data", new BsonString("a")));
+        MongoCommandException historyLost = new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(286))
+                .append("errmsg", new BsonString("Resume of change stream was not possible")), new ServerAddress());
+
+        noteChangeStream.onError(new UncategorizedMongoDbException("Change stream failed", historyLost));
+        noteChangeStream.saveToken();
+
+        verify(eventPublisher).publishEvent(any(NoteChangesLostEvent.class));
+        verify(scheduler).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        assertNull(ReflectionTestUtils.getField(noteChangeStream, "resumeToken"));
+        verify(tokens).deleteOne(any(Bson.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Message<ChangeStreamDocument<Document>, Note> change(OperationType type, Note note, ObjectId id, String token) {
+        ChangeStreamDocument<Document> raw = mock(ChangeStreamDocument.class);
+        when(raw.getOperationType()).thenReturn(type);
+        when(raw.getResumeToken()).thenReturn(new BsonDocument("_data", new BsonString(token)));
+        if(id != null) {
+            when(raw.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonObjectId(id)));
+        }
+        Message<ChangeStreamDocument<Document>, Note> message = mock(Message.class);
+        when(message.getRaw()).thenReturn(raw);
+        when(message.getBody()).thenReturn(note);
+        return message;
+    }
+
+    private static Note note(String id, Long version) {
+        Note note = new Note();
+        note.setId(id);
+        note.setVersion(version);
+        return note;
+    }
+}
@@ -0,0 +1,177 @@
+package com.teletronics.notes.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NoteSearchIndexTest {
+
+    private NoteSearchIndex noteSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        noteSearchIndex = new NoteSearchIndex();
+        noteSearchIndex.index("1", "Shopping", "milk, eggs and bread");
+        noteSearchIndex.index("2", "Rabbit", "small rabbit jumped over the small rabbit in the jungle");
+        noteSearchIndex.index("3", "Jungle book", "a story about the jungle");
+    }
+
+    @Test
+    void givenQuery_search_RanksByRelevance() {
+        SearchHits hits = noteSearchIndex.search("Rabbit jungle", 0, 10);
+
+        assertEquals(List.of("2", "3"), hits.ids());
+        assertEquals(2, hits.total());
+    }
+
+    @Test
+    void givenOffset_search_ReturnsRequestedPage() {
+        SearchHits hits = noteSearchIndex.search("rabbit jungle", 1, 1);
+
+        assertEquals(List.of("3"), hits.ids());
+        assertEquals(2, hits.total());
+    }
+
+    @Test
+    void givenUpdatedNote_search_UsesNewContent() {
+        noteSearchIndex.index("2", "Rabbit", "a carrot");
+
+        assertEquals(List.of("3"), noteSearchIndex.search("jungle", 0, 10).ids());
+        assertEquals(List.of("2"), noteSearchIndex.search("carrot", 0, 10).ids());
+    }
+
+    @Test
+    void givenRemovedNote_search_SkipsIt() {
+        noteSearchIndex.remove("3");
+
+        assertEquals(List.of("2"), noteSearchIndex.search("jungle", 0, 10).ids());
+        assertEquals(2, noteSearchIndex.size());
+    }
+
+    @Test
+    void givenManyDeletes_search_CompactsAndKeepsLiveNotes() {
+        for (int i = 0; i < 3000; i++) {
+            noteSearchIndex.index("tmp" + i, "temporary", "jungle");
+            noteSearchIndex.remove("tmp" + i);
+        }
+
+        SearchHits hits = noteSearchIndex.search("jungle", 0, 10);
+
+        assertEquals(List.of("3", "2"), hits.ids());
+        assertEquals(3, noteSearchIndex.size());
+    }
+
+    @Test
+    void givenFlushedIndex_open_SearchesSegmentFiles(@TempDir Path directory) throws Exception {
+        NoteSearchIndex persisted = new NoteSearchIndex();
+        persisted.open(directory);
+        persisted.index("1", "Rabbit", "small rabbit", LocalDateTime.of(2024, 11, 3, 10, 0));
+        persisted.index("2", "Jungle", "the jungle", LocalDateTime.of(2024, 11, 4, 10, 0));
+        persisted.flush();
+        persisted.remove("1");
+        persisted.index("3", "Rabbit book", "rabbit", LocalDateTime.of(2024, 11, 5, 10, 0));
+        persisted.close();
+
+        NoteSearchIndex reopened = new NoteSearchIndex();
+        Optional<LocalDateTime> watermark = reopened.open(directory);
+
+        assertEquals(Optional.of(LocalDateTime.of(2024, 11, 5, 10, 0)), watermark);
+        assertEquals(2, reopened.size());
+        assertEquals(List.of("3"), reopened.search("rabbit", 0, 10).ids());
+        assertEquals(List.of("2"), reopened.search("jungle", 0, 10).ids());
+    }
+
+    @Test
+    void givenFlushedIndex_clear_RemovesSegmentsAndWatermark(@TempDir Path directory) throws Exception {
+        NoteSearchIndex persisted = new NoteSearchIndex();
+        persisted.open(directory);
+        persisted.index("1", "Rabbit", "small rabbit", LocalDateTime.of(2024, 11, 3, 10, 0));
+        persisted.flush();
+        persisted.remove("1");
+        persisted.flush();
+        persisted.index("2", "Jungle", "the jungle", LocalDateTime.of(2024, 11, 4, 10, 0));
+
+        persisted.clear();
+
+        assertEquals(0, persisted.size());
+        assertEquals(List.of(), persisted.search("rabbit jungle", 0, 10).ids());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("checkpoint"), files.map(file -> file.getFileName().toString()).toList());
+        }
+        persisted.index("3", "Rabbit book", "rabbit", LocalDateTime.of(2024, 11, 5, 10, 0));
+        assertEquals(List.of("3"), persisted.search("rabbit", 0, 10).ids());
+        assertEquals(Optional.empty(), new NoteSearchIndex().open(directory));
+    }
+
+    @Test
+    void givenOtherFiles_open_DeletesOnlyStaleIndexFiles(@TempDir Path directory) throws Exception {
+        Files.createDirectories(directory.resolve("backup"));
+        Files.writeString(directory.resolve("notes.txt"), "kept");
+        Files.writeString(directory.resolve("segment-stale.seg.tmp"), "partial");
+
+        NoteSearchIndex persisted = new NoteSearchIndex();
+        persisted.open(directory);
+        persisted.index("1", "Rabbit", "small rabbit", LocalDateTime.of(2024, 11, 3, 10, 0));
+        persisted.flush();
+        persisted.close();
+        new NoteSearchIndex().open(directory);
+
+        assertTrue(Files.isDirectory(directory.resolve("backup")));
+        assertTrue(Files.exists(directory.resolve("notes.txt")));
+        assertFalse(Files.exists(directory.resolve("segment-stale.seg.tmp")));
+    }
+
+    @Test
+    void givenManySegments_merge_KeepsLiveNotes(@TempDir Path directory) throws Exception {
+        NoteSearchIndex persisted = new NoteSearchIndex();
+        persisted.open(directory);
+        for (int i = 0; i < 12; i++) {
+            persisted.index("note" + i, "Note " + i, "rabbit jungle " + "word".repeat(i % 3 + 1));
+            persisted.flush();
+        }
+        persisted.remove("note4");
+        persisted.index("note5", "Note 5", "carrot");
+        persisted.merge();
+        persisted.close();
+
+        NoteSearchIndex reopened = new NoteSearchIndex();
+        reopened.open(directory);
+
+        SearchHits hits = reopened.search("jungle", 0, 20);
+        assertEquals(10, hits.total());
+        assertEquals(List.of("note5"), reopened.search("carrot", 0, 20).ids());
+        assertEquals(12 - 1, reopened.size());
+        try (Stream<Path> files = Files.list(directory)) {
+            // 12 flushed segments, 4 of them merged into one, and the one flushed on close
+            assertEquals(10, files.filter(file -> file.toString().endsWith(".seg")).count());
+        }
+    }
+
+    @Test
+    void givenNotesDeletedWhileDown_reconcile_RemovesThem(@TempDir Path directory) throws Exception {
+        NoteSearchIndex persisted = new NoteSearchIndex();
+        persisted.open(directory);
+        persisted.index("1", "Rabbit", "small rabbit");
+        persisted.index("2", "Rabbit", "big rabbit");
+        persisted.close();
+
+        NoteSearchIndex reopened = new NoteSearchIndex();
+        reopened.open(directory);
+        NoteSearchIndex.Reconciliation reconciliation = reopened.reconcile();
+        reconciliation.accept("2");
+
+        assertEquals(1, reconciliation.run());
+        assertEquals(List.of("2"), reopened.search("rabbit", 0, 10).ids());
+    }
+}
@@ -0,0 +1,100 @@
+package com.teletronics.notes.search;
+
+import com.teletronics.notes.exceptions.InvalidTagQueryException;
+import com.teletronics.notes.models.Tag;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NoteTagIndexTest {
+
+    private NoteTagIndex noteTagIndex;
+
+    @BeforeEach
+    void setUp() {
+        noteTagIndex = new NoteTagIndex();
+        noteTagIndex.index("1", Set.of(Tag.BUSINESS));
+        noteTagIndex.index("2", Set.of(Tag.BUSINESS, Tag.IMPORTANT));
+        noteTagIndex.index("3", Set.of(Tag.PERSONAL));
+        noteTagIndex.index("4", null);
+        noteTagIndex.index("5", Set.of(Tag.PERSONAL, Tag.IMPORTANT));
+    }
+
+    @Test
+    void givenExpression_find_ReturnsMatchingNotesNewestFirst() {
+        assertEquals(new SearchHits(List.of("5", "2", "1"), 3),
+                noteTagIndex.find(TagExpression.parse("business or important"), 0, 10));
+        assertEquals(new SearchHits(List.of("1"), 1),
+                noteTagIndex.find(TagExpression.parse("BUSINESS AND NOT IMPORTANT"), 0, 10));
+        assertEquals(new SearchHits(List.of("4", "1"), 2),
+                noteTagIndex.find(TagExpression.parse("NOT (PERSONAL OR IMPORTANT)"), 0, 10));
+        assertEquals(new SearchHits(List.of("4"), 3),
+                noteTagIndex.find(TagExpression.parse("NOT BUSINESS"), 1, 1));
+    }
+
+    @Test
+    void givenUpdatedAndDeletedNotes_counts_ReflectCurrentTags() {
+        noteTagIndex.index("1", Set.of(Tag.PERSONAL));
+        noteTagIndex.remove("5");
+        noteTagIndex.remove("unknown");
+
+        assertEquals(Map.of(Tag.BUSINESS, 1L, Tag.PERSONAL, 2L, Tag.IMPORTANT, 1L), noteTagIndex.counts());
+        assertEquals(List.of("3", "1"), noteTagIndex.find(TagExpression.parse("PERSONAL"), 0, 10).ids());
+        assertEquals(4, noteTagIndex.size());
+    }
+
+    @Test
+    void givenNoTags_index_KeepsTagsOfIndexedNote() {
+        noteTagIndex.index("2", null);
+
+        assertEquals(List.of("5", "2"), noteTagIndex.find(TagExpression.parse("IMPORTANT"), 0, 10).ids());
+    }
+
+    @Test
+    void givenMostNotesDeleted_remove_RenumbersLiveNotesInOrder() {
+        noteTagIndex.clear();
+        int count = 3 * NoteTagIndex.MIN_COMPACTED_ORDINALS;
+        for (int i = 0; i < count; i++) {
+            noteTagIndex.index(String.valueOf(i), Set.of(i % 2 == 0 ? Tag.BUSINESS : Tag.PERSONAL));
+        }
+        for (int i = 0; i < count; i++) {
+            if(i % 3 != 0) {
+                noteTagIndex.remove(String.valueOf(i));
+            }
+        }
+
+        assertEquals(count / 3, noteTagIndex.size());
+        assertTrue(noteTagIndex.ordinalCount() < count);
+        noteTagIndex.index("new", Set.of(Tag.BUSINESS));
+        assertEquals(List.of("new", String.valueOf(count - 6), String.valueOf(count - 12)),
+                noteTagIndex.find(TagExpression.parse("BUSINESS"), 0, 3).ids());
+        assertEquals(List.of(String.valueOf(count - 3)),
+                noteTagIndex.find(TagExpression.parse("PERSONAL"), 0, 1).ids());
+    }
+
+    @Test
+    void givenExpression_toCriteria_QueriesTags() {
+        Document query = Query.query(TagExpression.parse("BUSINESS AND NOT (PERSONAL OR NOT IMPORTANT)").toCriteria())
+                .getQueryObject();
+
+        assertEquals(Document.parse("{ $and: [ { tags: 'BUSINESS' },"
+                + " { $nor: [ { $or: [ { tags: 'PERSONAL' }, { tags: { $ne: 'IMPORTANT' } } ] } ] } ] }"), query);
+    }
+
+    @Test
+    void givenInvalidQuery_parse_ThrowsInvalidTagQueryException() {
+        for (String query : List.of("", "BUSINESS AND", "(BUSINESS", "BUSINESS)", "URGENT", "BUSINESS PERSONAL",
+                "(".repeat(40) + "BUSINESS" + ")".repeat(40))) {
+            assertThrows(InvalidTagQueryException.class, () -> TagExpression.parse(query), query);
+        }
+    }
+}
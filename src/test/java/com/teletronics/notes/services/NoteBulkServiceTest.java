@@ -0,0 +1,231 @@
+package com.teletronics.notes.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.teletronics.notes.configs.NoteTextCompression;
+import com.teletronics.notes.dtos.BulkItemResultDto;
+import com.teletronics.notes.dtos.BulkResponseDto;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.utils.TextHash;
+import jakarta.validation.Validation;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class NoteBulkServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Spy
+    private NoteService noteService;
+
+    @Spy
+    private NoteTextCompression noteTextCompression;
+
+    @Spy
+    private NoteMapper noteMapper;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Spy
+    private jakarta.validation.Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private NoteBulkService noteBulkService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(noteBulkService, "batchSize", 2);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(1, 1, 1, 1, List.of(), List.of()));
+    }
+
+    @Test
+    void givenMixedOperations_process_ReportsEachLine() throws Exception {
+        String existingId = new ObjectId().toHexString();
+        String missingId = new ObjectId().toHexString();
+        Note existing = new Note();
+        existing.setId(existingId);
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(existing));
+        String operations = """
+                {"op":"create","note":{"title":"First","text":"note is just a note","tags":["PERSONAL"]}}
+                {"op":"create","note":{"tags":["UNKNOWN"]}}
+
+                {"op":"update","id":"%s","note":{"title":"Edited","text":"edited note"}}
+                {"op":"delete","id":"%s"}
+                not json
+                {"op":"upsert","id":"%s"}
+                """.formatted(existingId, missingId, existingId);
+
+        BulkResponseDto response = noteBulkService.process(new StringReader(operations));
+
+        List<BulkItemResultDto> items = response.getItems();
+        assertTrue(response.isErrors());
+        assertEquals(6, items.size());
+        assertEquals(201, items.get(0).getStatus());
+        assertNotNull(items.get(0).getId());
+        assertEquals(400, items.get(1).getStatus());
+        assertEquals(4, items.get(2).getLine());
+        assertEquals(200, items.get(2).getStatus());
+        assertEquals(404, items.get(3).getStatus());
+        assertEquals(400, items.get(4).getStatus());
+        assertEquals(400, items.get(5).getStatus());
+
+        verify(bulkOperations).insert(any(Note.class));
+        verify(bulkOperations).updateOne(any(Query.class), any(org.springframework.data.mongodb.core.query.Update.class));
+        verify(bulkOperations, never()).remove(any(Query.class));
+        verify(bulkOperations).execute();
+        verify(eventPublisher, times(2)).publishEvent(any(NoteSavedEvent.class));
+        verify(eventPublisher, never()).publishEvent(any(NoteDeletedEvent.class));
+    }
+
+    @Test
+    void givenUpdateOfNoteDeletedMeanwhile_process_ReportsNotFound() throws Exception {
+        String id = new ObjectId().toHexString();
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of());
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        String operations = """
+                {"op":"update","id":"%s","note":{"title":"Edited","text":"edited note"}}
+                """.formatted(id);
+
+        BulkResponseDto response = noteBulkService.process(new StringReader(operations));
+
+        assertTrue(response.isErrors());
+        assertEquals(404, response.getItems().get(0).getStatus());
+        verify(bulkOperations).updateOne(any(Query.class), any(org.springframework.data.mongodb.core.query.Update.class));
+        verify(eventPublisher, never()).publishEvent(any(NoteSavedEvent.class));
+    }
+
+    @Test
+    void givenUpdateWithStaleVersion_process_ReportsConflict() throws Exception {
+        String staleId = new ObjectId().toHexString();
+        String currentId = new ObjectId().toHexString();
+        Note stale = new Note();
+        stale.setId(staleId);
+        stale.setVersion(5L);
+        Map<String, Update> updates = recordUpdates();
+        when(mongoTemplate.find(any(Query.class), eq(Note.class)))
+                .thenAnswer(invocation -> List.of(stale, storedAfter(currentId, updates.get(currentId), 3L)));
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        String operations = """
+                {"op":"update","id":"%s","note":{"title":"Edited","text":"edited note","version":3}}
+                {"op":"update","id":"%s","note":{"title":"Edited","text":"edited note","version":2}}
+                """.formatted(staleId, currentId);
+
+        BulkResponseDto response = noteBulkService.process(new StringReader(operations));
+
+        assertTrue(response.isErrors());
+        assertEquals(409, response.getItems().get(0).getStatus());
+        assertEquals(200, response.getItems().get(1).getStatus());
+        verify(bulkOperations).updateOne(argThat((Query query) -> query.getQueryObject().get("version").equals(3L)),
+                any(org.springframework.data.mongodb.core.query.Update.class));
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof NoteSavedEvent saved
+                && saved.note().getId().equals(currentId) && saved.note().getVersion() == 3L));
+        verify(eventPublisher, times(1)).publishEvent(any(NoteSavedEvent.class));
+    }
+
+    @Test
+    void givenUpdateRacedByAnotherWriterFromSameVersion_process_ReportsConflict() throws Exception {
+        String id = new ObjectId().toHexString();
+        Note other = new Note();
+        other.setId(id);
+        other.setVersion(3L);
+        other.setTextHash(TextHash.of("text of the other writer"));
+        other.setLastModifiedDate(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(other));
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        String operations = """
+                {"op":"update","id":"%s","note":{"title":"Edited","text":"edited note","version":2}}
+                """.formatted(id);
+
+        BulkResponseDto response = noteBulkService.process(new StringReader(operations));
+
+        assertTrue(response.isErrors());
+        assertEquals(409, response.getItems().get(0).getStatus());
+        verify(eventPublisher, never()).publishEvent(any(NoteSavedEvent.class));
+    }
+
+    @Test
+    void givenOperationsOnSameNote_process_WritesThemInSeparateBatches() throws Exception {
+        ReflectionTestUtils.setField(noteBulkService, "batchSize", 10);
+        String id = new ObjectId().toHexString();
+        Note existing = new Note();
+        existing.setId(id);
+        when(mongoTemplate.find(any(Query.class), eq(Note.class))).thenReturn(List.of(existing));
+        String operations = """
+                {"op":"update","id":"%s","note":{"title":"Edited","text":"edited note"}}
+                {"op":"delete","id":"%s"}
+                """.formatted(id, id);
+
+        BulkResponseDto response = noteBulkService.process(new StringReader(operations));
+
+        assertFalse(response.isErrors());
+        assertEquals(200, response.getItems().get(0).getStatus());
+        assertEquals(204, response.getItems().get(1).getStatus());
+        InOrder inOrder = inOrder(bulkOperations);
+        inOrder.verify(bulkOperations).updateOne(any(Query.class), any(org.springframework.data.mongodb.core.query.Update.class));
+        inOrder.verify(bulkOperations).execute();
+        inOrder.verify(bulkOperations).remove(any(Query.class));
+        inOrder.verify(bulkOperations).execute();
+    }
+
+    /**
+     * Keeps the update sent for each note id.
+     */
+    private Map<String, Update> recordUpdates() {
+        Map<String, Update> updates = new HashMap<>();
+        when(bulkOperations.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            updates.put((String) query.getQueryObject().get("id"), invocation.getArgument(1));
+            return bulkOperations;
+        });
+        return updates;
+    }
+
+    private static Note storedAfter(String id, Update update, long version) {
+        Document set = (Document) update.getUpdateObject().get("$set");
+        Note stored = new Note();
+        stored.setId(id);
+        stored.setVersion(version);
+        stored.setTextHash(set.getString("textHash"));
+        stored.setLastModifiedDate(((LocalDateTime) set.get("lastModifiedDate")).truncatedTo(ChronoUnit.MILLIS));
+        return stored;
+    }
+}
@@ -0,0 +1,84 @@
+package com.teletronics.notes.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.teletronics.notes.mappers.NoteMapper;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class NoteExportServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Spy
+    private NoteMapper noteMapper;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @InjectMocks
+    private NoteExportService noteExportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(noteExportService, "batchSize", 100);
+    }
+
+    @Test
+    void givenNotes_export_WritesOneLinePerNote() throws Exception {
+        Note first = new Note();
+        first.setId("1");
+        first.setTitle("Title 1");
+        first.setText("note is just a note");
+        first.setTags(Set.of(Tag.PERSONAL));
+        first.setCreatedDate(LocalDateTime.of(2024, 11, 5, 0, 19));
+        first.setVersion(0L);
+        Note second = new Note();
+        second.setId("2");
+        second.setTitle("Title 2");
+        second.setText("edited note");
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(Stream.of(first, second));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = noteExportService.export(Set.of("PERSONAL"), LocalDateTime.of(2024, 11, 1, 0, 0), out);
+
+        assertEquals(2, count);
+        assertEquals("{\"id\":\"1\",\"title\":\"Title 1\",\"text\":\"note is just a note\",\"tags\":[\"PERSONAL\"],"
+                        + "\"createdDate\":\"2024-11-05T00:19:00\",\"version\":0}\n"
+                        + "{\"id\":\"2\",\"title\":\"Title 2\",\"text\":\"edited note\"}\n",
+                out.toString());
+    }
+
+    @Test
+    void givenFilters_exportQuery_FiltersAndSkipsStats() {
+        Query query = NoteExportService.exportQuery(Set.of("BUSINESS"), LocalDateTime.of(2024, 11, 1, 0, 0), 100);
+
+        assertEquals(Set.of("tags", "lastModifiedDate"), query.getQueryObject().keySet());
+        assertEquals(new Document("stats", 0), query.getFieldsObject());
+        assertEquals(100, query.getMeta().getCursorBatchSize());
+        assertTrue(query.getSortObject().isEmpty());
+    }
+}
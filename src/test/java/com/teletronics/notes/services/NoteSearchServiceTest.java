@@ -0,0 +1,113 @@
+package com.teletronics.notes.services;
+
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.repositories.NoteRepository;
+import com.teletronics.notes.search.NoteSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class NoteSearchServiceTest {
+
+    @Mock
+    private NoteSearchIndex noteSearchIndex;
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private NoteSearchService noteSearchService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(noteSearchService, "buildRetryDelay", Duration.ofMillis(1));
+    }
+
+    @Test
+    void givenFailingBuild_buildUntilDone_RetriesUntilTheIndexIsReady() {
+        Note note = note("1");
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class)))
+                .thenThrow(new IllegalStateException("Database unavailable"))
+                .thenReturn(Stream.of(note));
+
+        noteSearchService.buildUntilDone();
+
+        assertTrue(noteSearchService.isReady());
+        verify(mongoTemplate, times(2)).stream(any(Query.class), eq(Note.class));
+        verify(noteSearchIndex).index("1", note.getTitle(), note.getText(), note.getLastModifiedDate());
+    }
+
+    @Test
+    void givenNoteWithVeryLongWord_build_IndexesItsOtherWords() {
+        NoteSearchService service = new NoteSearchService();
+        NoteSearchIndex index = new NoteSearchIndex();
+        ReflectionTestUtils.setField(service, "noteSearchIndex", index);
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        Note note = note("1");
+        note.setText("rabbit " + "a".repeat(70_000) + " jungle");
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(Stream.of(note));
+
+        assertTrue(service.build());
+
+        assertTrue(service.isReady());
+        assertEquals(List.of("1"), index.search("jungle", 0, 10).ids());
+        assertEquals(List.of(), index.search("a".repeat(70_000), 0, 10).ids());
+    }
+
+    @Test
+    void givenChangesLost_rebuild_ClearsAndIndexesEveryNote() {
+        ReflectionTestUtils.setField(noteSearchService, "checkpoint", Optional.of(LocalDateTime.now()));
+        ReflectionTestUtils.setField(noteSearchService, "ready", true);
+        Note note = note("1");
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class))).thenReturn(Stream.of(note));
+
+        noteSearchService.rebuild();
+
+        assertTrue(noteSearchService.isReady());
+        InOrder inOrder = inOrder(noteSearchIndex, mongoTemplate);
+        inOrder.verify(noteSearchIndex).clear();
+        inOrder.verify(mongoTemplate).stream(argThat((Query query) -> query.getQueryObject().isEmpty()), eq(Note.class));
+        inOrder.verify(noteSearchIndex).index("1", note.getTitle(), note.getText(), note.getLastModifiedDate());
+        verify(noteSearchIndex, never()).reconcile();
+    }
+
+    @Test
+    void givenFailingIndex_listeners_DoNotThrow() {
+        doThrow(new IllegalStateException("Index closed")).when(noteSearchIndex).index(any(), any(), any(), any());
+        doThrow(new IllegalStateException("Index closed")).when(noteSearchIndex).remove(any());
+
+        assertDoesNotThrow(() -> noteSearchService.onNoteSaved(new NoteSavedEvent(note("1"))));
+        assertDoesNotThrow(() -> noteSearchService.onNoteDeleted(new NoteDeletedEvent("1")));
+    }
+
+    private static Note note(String id) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle("Title " + id);
+        note.setText("Text " + id);
+        note.setLastModifiedDate(LocalDateTime.now());
+        return note;
+    }
+}
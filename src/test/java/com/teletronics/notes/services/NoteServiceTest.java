@@ -1,25 +1,56 @@
 package com.teletronics.notes.services;
 
 import com.teletronics.notes.comparators.DescendingOrderIgnoringCaseComparator;
+import com.teletronics.notes.configs.NoteMetrics;
+import com.teletronics.notes.configs.NoteTextCompression;
 import com.teletronics.notes.dtos.NoteDto;
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
 import com.teletronics.notes.exceptions.ResourceNotFoundException;
+import com.teletronics.notes.exceptions.StatsLimitExceededException;
+import com.teletronics.notes.exceptions.VersionConflictException;
 import com.teletronics.notes.models.Note;
 import com.teletronics.notes.repositories.NoteProjection;
 import com.teletronics.notes.repositories.NoteRepository;
+import com.teletronics.notes.repositories.NoteStatsProjection;
+import com.teletronics.notes.repositories.NoteTextProjection;
+import com.teletronics.notes.repositories.NoteVersionProjection;
+import com.teletronics.notes.repositories.StoredNoteText;
+import com.teletronics.notes.utils.TextHash;
+import com.teletronics.notes.utils.NoteCursor;
+import com.teletronics.notes.utils.StringProcessingUtils;
+import com.teletronics.notes.utils.TextCompression;
+import com.teletronics.notes.utils.WordFrequencyCounter;
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class NoteServiceTest {
@@ -27,6 +58,21 @@ public class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private NoteMetrics noteMetrics;
+
+    @Spy
+    private NoteTextCompression noteTextCompression;
+
+    @Mock
+    private NotesVersionCache notesVersionCache;
+
     @InjectMocks
     private NoteService noteService;
 
@@ -43,6 +89,7 @@ public class NoteServiceTest {
         assertNotNull(result);
         assertEquals(note, result);
         verify(noteRepository, times(1)).save(note);
+        verify(eventPublisher).publishEvent(new NoteSavedEvent(note));
     }
 
     @Test
@@ -53,6 +100,7 @@ public class NoteServiceTest {
         RuntimeException exception = assertThrows(RuntimeException.class, () -> noteService.save(note));
         assertEquals("Error in creating or updating the note", exception.getMessage());
         verify(noteRepository, times(1)).save(note);
+        verify(noteMetrics).recordError(eq("save"), any(RuntimeException.class));
     }
 
     @Test
@@ -76,13 +124,80 @@ public class NoteServiceTest {
     }
 
     @Test
-    void givenNote_DeletesNote() {
-        Note note = new Note();
-        note.setId("1");
-        note.setTitle("Title");
-        note.setText("Text");
-        noteService.delete(note);
-        verify(noteRepository, times(1)).delete(note); // Verify delete is called once with the correct note
+    void givenId_DeletesNote() {
+        when(noteRepository.removeById("1")).thenReturn(1L);
+        noteService.deleteById("1");
+        verify(noteRepository, times(1)).removeById("1"); // Verify delete is called once with the correct id
+        verify(eventPublisher).publishEvent(new NoteDeletedEvent("1"));
+    }
+
+    @Test
+    void givenInvalidId_deleteById_ThrowsResourceNotFoundException() {
+        when(noteRepository.removeById("1")).thenReturn(0L);
+        assertThrows(ResourceNotFoundException.class, () -> noteService.deleteById("1"));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void givenChanges_update_SetsFieldsInOneRoundTrip() {
+        Note changes = new Note();
+        changes.setTitle("Title");
+        changes.setText("note is just a note");
+        Note updated = new Note();
+        updated.setId("1");
+        updated.setTitle("Title");
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(Note.class)))
+                .thenAnswer(invocation -> isSameTextQuery(invocation.getArgument(0)) ? null : updated);
+
+        Note result = noteService.update("1", changes, null);
+
+        assertEquals("note is just a note", result.getText());
+        assertEquals(noteService.findUniqueOccurrence("note is just a note"), result.getStats());
+        assertEquals(TextHash.of("note is just a note"), setFields(update.getValue()).get("textHash"));
+        verify(noteRepository, never()).findById(any());
+        verify(noteRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(new NoteSavedEvent(updated));
+    }
+
+    @Test
+    void givenUnchangedText_update_KeepsTextAndStats() {
+        Note changes = new Note();
+        changes.setTitle("New title");
+        changes.setText("note is just a note");
+        Note updated = new Note();
+        updated.setId("1");
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(Note.class)))
+                .thenReturn(updated);
+
+        Note result = noteService.update("1", changes, null);
+
+        assertTrue(isSameTextQuery(query.getValue()));
+        assertEquals(TextHash.of("note is just a note"), query.getValue().getQueryObject().get("textHash"));
+        assertEquals("New title", setFields(update.getValue()).get("title"));
+        assertFalse(setFields(update.getValue()).containsKey("text"));
+        assertFalse(setFields(update.getValue()).containsKey("stats"));
+        assertNull(result.getStats());
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Note.class));
+    }
+
+    @Test
+    void givenInvalidId_update_ThrowsResourceNotFoundException() {
+        Note changes = new Note();
+        changes.setTitle("Title");
+        assertThrows(ResourceNotFoundException.class, () -> noteService.update("1", changes, null));
+    }
+
+    @Test
+    void givenStaleVersion_update_ThrowsVersionConflictException() {
+        Note changes = new Note();
+        changes.setTitle("Title");
+        when(noteRepository.existsById("1")).thenReturn(true);
+
+        assertThrows(VersionConflictException.class, () -> noteService.update("1", changes, 3L));
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -134,6 +249,45 @@ public class NoteServiceTest {
         assertThat(result.getContent().get(0).getTitle()).isEqualTo("First Note");
     }
 
+    @Test
+    void findAllAfter_WithNoCursor_ReturnsFirstSlice() {
+        NoteProjection note = mock(NoteProjection.class);
+        Pageable pageable = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "createdDate", "id"));
+        when(noteRepository.findSliceProjectedBy(pageable)).thenReturn(new SliceImpl<>(List.of(note), pageable, true));
+
+        Slice<NoteProjection> result = noteService.findAllAfter(null, null, 1);
+
+        assertThat(result.getContent()).containsExactly(note);
+        assertThat(result.hasNext()).isTrue();
+    }
+
+    @Test
+    void findAllAfter_WithCursorAndTags_SeeksPastCursor() {
+        NoteCursor cursor = new NoteCursor(LocalDateTime.of(2024, 11, 5, 10, 0), new ObjectId());
+        Set<String> tags = Set.of("PERSONAL");
+        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdDate", "id"));
+        when(noteRepository.findSliceByTagsInAfter(cursor.createdDate(), cursor.id(), tags, pageable))
+                .thenReturn(new SliceImpl<>(List.of(), pageable, false));
+
+        Slice<NoteProjection> result = noteService.findAllAfter(tags, cursor, 10);
+
+        verify(noteRepository).findSliceByTagsInAfter(cursor.createdDate(), cursor.id(), tags, pageable);
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    @Test
+    void findAllAfter_WithSkippingCursor_DropsSkippedNotes() {
+        NoteProjection skipped = mock(NoteProjection.class);
+        NoteProjection note = mock(NoteProjection.class);
+        Pageable pageable = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "createdDate", "id"));
+        when(noteRepository.findSliceProjectedBy(pageable)).thenReturn(new SliceImpl<>(List.of(skipped, note), pageable, false));
+
+        Slice<NoteProjection> result = noteService.findAllAfter(null, NoteCursor.decode(new NoteCursor(null, null, 1).encode()), 1);
+
+        assertThat(result.getContent()).containsExactly(note);
+        assertThat(result.hasNext()).isFalse();
+    }
+
     @Test
     public void findUniqueOccurrence_WhenInputIsValid() {
         String noteText = "John is a cat, John is a bat!";
@@ -170,4 +324,273 @@ public class NoteServiceTest {
 
         assertEquals(expected, result);
     }
+
+    @Test
+    public void findUniqueOccurrence_MatchesRegexBasedCount() {
+        Random random = new Random(42);
+        String alphabet = "abcXYZ019 ,.!-_\n\té€";
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        String noteText = builder.toString();
+
+        Map<String, Integer> expected = new TreeMap<>(new DescendingOrderIgnoringCaseComparator());
+        String[] words = StringProcessingUtils.splitWithRegex(StringProcessingUtils.replaceAllAlphaNumerics(noteText), " ");
+        for (String word : words) {
+            expected.merge(word.toLowerCase(), 1, Integer::sum);
+        }
+
+        Map<String, Integer> result = noteService.findUniqueOccurrence(noteText);
+
+        assertEquals(expected, result);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(result.keySet()));
+    }
+
+    @Test
+    public void findUniqueOccurrence_WordSpanningChunks_CountedOnce() {
+        WordFrequencyCounter counter = new WordFrequencyCounter();
+        counter.accept("Rab");
+        counter.accept("bit rab");
+        counter.accept("BIT");
+
+        Map<String, Integer> result = counter.toSortedMap();
+
+        assertEquals(Map.of("rabbit", 2), result);
+    }
+
+    @Test
+    public void findUniqueOccurrence_GivenReader_CountsAcrossChunks() throws Exception {
+        String noteText = "small rabbit jumped over the small rabbit in the jungle ".repeat(1000);
+
+        Map<String, Integer> result = noteService.findUniqueOccurrence(new StringReader(noteText));
+
+        assertEquals(noteService.findUniqueOccurrence(noteText), result);
+        assertEquals(2000, result.get("rabbit"));
+    }
+
+    @Test
+    void findUniqueOccurrence_WhenStreamedWordIsTooLong_ThrowsStatsLimitExceededException() throws IOException {
+        String word = "a".repeat(WordFrequencyCounter.MAX_WORD_LENGTH);
+
+        assertEquals(Map.of(word + "a", 1), noteService.findUniqueOccurrence(word + "a"));
+        assertEquals(Map.of(word, 1), noteService.findUniqueOccurrence(new StringReader(word)));
+        assertThrows(StatsLimitExceededException.class,
+                () -> noteService.findUniqueOccurrence(new StringReader(word + "a")));
+    }
+
+    @Test
+    public void findUniqueOccurrence_WhenUniqueTermsAboveLimit_ThrowsStatsLimitExceededException() {
+        ReflectionTestUtils.setField(noteService, "maxUniqueTerms", 2);
+
+        assertThrows(StatsLimitExceededException.class,
+                () -> noteService.findUniqueOccurrence(new StringReader("one two two three")));
+        assertEquals(Map.of("one", 1, "two", 2, "three", 1), noteService.findUniqueOccurrence("one two two three"));
+    }
+
+    @Test
+    public void findUniqueOccurrence_AboveParallelThreshold_MatchesSingleThreadedCount() {
+        Random random = new Random(7);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            builder.append("word").append(random.nextInt(500)).append(i % 7 == 0 ? ", " : " ");
+        }
+        String noteText = builder.toString();
+        Map<String, Integer> expected = noteService.findUniqueOccurrence(noteText);
+
+        ReflectionTestUtils.setField(noteService, "parallelThreshold", 1024);
+        ReflectionTestUtils.setField(noteService, "parallelSegmentSize", 4096);
+        Map<String, Integer> result = noteService.findUniqueOccurrence(noteText);
+
+        assertEquals(expected, result);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(result.keySet()));
+    }
+
+    @Test
+    void givenNoteWithText_whenSave_StoresWordStats() {
+        Note note = new Note();
+        note.setText("John is a cat, John is a bat!");
+        when(noteRepository.save(note)).thenReturn(note);
+
+        Note result = noteService.save(note);
+
+        assertEquals(noteService.findUniqueOccurrence(note.getText()), result.getStats());
+    }
+
+    @Test
+    void givenNoteWithStats_whenSave_KeepsWordStats() {
+        Note note = new Note();
+        note.setText("John is a cat");
+        Map<String, Integer> stats = Map.of("john", 1);
+        note.setStats(stats);
+        when(noteRepository.save(note)).thenReturn(note);
+
+        Note result = noteService.save(note);
+
+        assertSame(stats, result.getStats());
+    }
+
+    @Test
+    void givenValidId_getNoteStats_ReturnsStoredStats() throws Exception {
+        String id = new ObjectId().toString();
+        Map<String, Integer> stats = Map.of("note", 2);
+        NoteStatsProjection projection = mock(NoteStatsProjection.class);
+        when(projection.getStats()).thenReturn(stats);
+        when(noteRepository.findStatsById(id)).thenReturn(Optional.of(projection));
+
+        assertEquals(stats, noteService.getNoteStats(id));
+        verify(noteRepository, never()).findById(id);
+    }
+
+    @Test
+    void givenNoteWithoutStoredStats_getNoteStats_CountsText() throws Exception {
+        String id = new ObjectId().toString();
+        Note note = new Note();
+        note.setId(id);
+        note.setText("note is just a note");
+        NoteStatsProjection projection = mock(NoteStatsProjection.class);
+        when(projection.getStats()).thenReturn(null);
+        when(noteRepository.findStatsById(id)).thenReturn(Optional.of(projection));
+        when(noteRepository.findById(id)).thenReturn(Optional.of(note));
+
+        assertEquals(noteService.findUniqueOccurrence(note.getText()), noteService.getNoteStats(id));
+    }
+
+    @Test
+    void givenValidId_getNoteText_ReadsOnlyText() throws Exception {
+        String id = new ObjectId().toString();
+        when(noteRepository.findStoredTextById(id)).thenReturn(Optional.of(new Document("text", "note is just a note")));
+
+        assertEquals("note is just a note", noteService.getNoteText(id).getText());
+        verify(noteRepository, never()).findById(id);
+    }
+
+    @Test
+    void givenCompressedText_getNoteText_KeepsItCompressedUntilWritten() throws Exception {
+        String id = new ObjectId().toString();
+        String text = "note is just a note, ünïcödé nôte ".repeat(100);
+        when(noteRepository.findStoredTextById(id)).thenReturn(Optional.of(new Document("text",
+                new Binary(NoteTextCompression.BINARY_SUBTYPE, TextCompression.compress(text)))
+                .append("version", 2L)));
+
+        NoteTextProjection note = noteService.getNoteText(id);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        note.writeTo(out);
+
+        assertTrue(((StoredNoteText) note).isCompressed());
+        assertTrue(note.weight() < text.length() / 4);
+        assertEquals(text, out.toString(StandardCharsets.UTF_8));
+        assertEquals(text, note.getText());
+        assertEquals(2L, note.getVersion());
+    }
+
+    @Test
+    void getNotesVersion_ChangesWithCountAndLastModifiedDate() {
+        NoteVersionProjection latest = mock(NoteVersionProjection.class);
+        when(latest.getLastModifiedDate()).thenReturn(LocalDateTime.of(2024, 11, 5, 10, 0), LocalDateTime.of(2024, 11, 5, 10, 1));
+        when(noteRepository.findFirstByOrderByLastModifiedDateDesc()).thenReturn(Optional.of(latest));
+        when(mongoTemplate.estimatedCount(Note.class)).thenReturn(8L, 8L, 7L);
+
+        String version = noteService.getNotesVersion();
+        String updated = noteService.getNotesVersion();
+        String deleted = noteService.getNotesVersion();
+
+        assertNotEquals(version, updated);
+        assertNotEquals(updated, deleted);
+        verify(notesVersionCache).put(0L, deleted);
+    }
+
+    @Test
+    void givenCachedVersion_getNotesVersion_DoesNotReadNotes() {
+        when(notesVersionCache.get()).thenReturn("8-1930b7c6e00");
+
+        assertEquals("8-1930b7c6e00", noteService.getNotesVersion());
+        verifyNoInteractions(mongoTemplate, noteRepository);
+    }
+
+    @Test
+    void givenInvalidId_getNoteText_ThrowsResourceNotFoundException() {
+        String id = new ObjectId().toString();
+        when(noteRepository.findStoredTextById(id)).thenReturn(Optional.empty());
+        assertThrows(ResourceNotFoundException.class, () -> noteService.getNoteText(id));
+    }
+
+    @Test
+    void givenInvalidId_getNoteStats_ThrowsResourceNotFoundException() {
+        String id = new ObjectId().toString();
+        when(noteRepository.findStatsById(id)).thenReturn(Optional.empty());
+        assertThrows(ResourceNotFoundException.class, () -> noteService.getNoteStats(id));
+    }
+
+    @Test
+    void givenEditedText_update_UpdatesStatsIncrementally() {
+        ReflectionTestUtils.setField(noteService, "incrementalStatsMaxChange", 0.5);
+        Random random = new Random(11);
+        String[] vocabulary = {"note", "Note", "rabbit", "jungle", "a", "the", "1", "x9", ",", ". ", "!", " "};
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            builder.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        }
+        Note stored = new Note();
+        stored.setText(builder.toString());
+        stored.setStats(noteService.findUniqueOccurrence(stored.getText()));
+        stored.setVersion(0L);
+        when(mongoTemplate.findOne(any(Query.class), eq(Note.class))).thenReturn(stored);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Note.class)))
+                .thenAnswer(invocation -> isSameTextQuery(invocation.getArgument(0)) ? null : new Note());
+
+        for (int i = 0; i < 200; i++) {
+            String text = stored.getText();
+            int start = random.nextInt(text.length());
+            int end = Math.min(text.length(), start + random.nextInt(40));
+            text = text.substring(0, start) + vocabulary[random.nextInt(vocabulary.length)] + text.substring(end);
+            Note changes = new Note();
+            changes.setText(text);
+
+            Note result = noteService.update("1", changes, null);
+
+            assertEquals(noteService.findUniqueOccurrence(text), result.getStats());
+            stored.setText(text);
+            stored.setStats(result.getStats());
+        }
+    }
+
+    @Test
+    void givenRewrittenText_update_RecountsStats() {
+        ReflectionTestUtils.setField(noteService, "incrementalStatsMaxChange", 0.2);
+        Note stored = new Note();
+        stored.setText("small rabbit jumped");
+        stored.setStats(noteService.findUniqueOccurrence("small rabbit jumped"));
+        when(mongoTemplate.findOne(any(Query.class), eq(Note.class))).thenReturn(stored);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Note.class)))
+                .thenAnswer(invocation -> isSameTextQuery(invocation.getArgument(0)) ? null : new Note());
+        Note changes = new Note();
+        changes.setText("big dog barked");
+
+        Note result = noteService.update("1", changes, null);
+
+        assertEquals(noteService.findUniqueOccurrence("big dog barked"), result.getStats());
+    }
+
+    @Test
+    void givenStaleVersion_update_ReadsNoStatsToUpdate() {
+        ReflectionTestUtils.setField(noteService, "incrementalStatsMaxChange", 0.2);
+        Note stored = new Note();
+        stored.setText("small rabbit jumped");
+        stored.setVersion(4L);
+        when(mongoTemplate.findOne(any(Query.class), eq(Note.class))).thenReturn(stored);
+        Note changes = new Note();
+        changes.setText("small rabbit jumped high");
+
+        assertThrows(VersionConflictException.class, () -> noteService.update("1", changes, 3L));
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Note.class));
+    }
+
+    private static boolean isSameTextQuery(Query query) {
+        return query.getQueryObject().containsKey("textHash") || query.getQueryObject().containsKey("text");
+    }
+
+    private static Document setFields(Update update) {
+        return (Document) update.getUpdateObject().get("$set");
+    }
 }
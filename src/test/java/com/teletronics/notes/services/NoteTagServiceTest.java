@@ -0,0 +1,113 @@
+package com.teletronics.notes.services;
+
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.models.Note;
+import com.teletronics.notes.models.Tag;
+import com.teletronics.notes.repositories.NoteRepository;
+import com.teletronics.notes.search.NoteTagIndex;
+import com.teletronics.notes.search.TagExpression;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+public class NoteTagServiceTest {
+
+    @Spy
+    private NoteTagIndex noteTagIndex = new NoteTagIndex();
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private NoteTagService noteTagService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(noteTagService, "buildRetryDelay", Duration.ofMillis(1));
+    }
+
+    @Test
+    void givenChangesDuringBuild_build_AppliesThemAfterStoredNotes() {
+        Note created = note("3", Tag.BUSINESS);
+        noteTagService.onNoteSaved(new NoteSavedEvent(created));
+        noteTagService.onNoteSaved(new NoteSavedEvent(note("1", Tag.PERSONAL)));
+        noteTagService.onNoteDeleted(new NoteDeletedEvent("2"));
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class)))
+                .thenReturn(Stream.of(note("1", Tag.BUSINESS), note("2", Tag.BUSINESS), created));
+
+        assertFalse(noteTagService.isReady());
+        noteTagService.build();
+
+        assertTrue(noteTagService.isReady());
+        assertEquals(List.of("3", "1"), noteTagIndex.find(TagExpression.parse("BUSINESS OR PERSONAL"), 0, 10).ids());
+        assertEquals(Map.of("BUSINESS", 1L, "PERSONAL", 1L, "IMPORTANT", 0L), noteTagService.countByTag());
+    }
+
+    @Test
+    void givenFailingBuild_buildUntilDone_RetriesWithTheDeferredChanges() {
+        noteTagService.onNoteSaved(new NoteSavedEvent(note("2", Tag.IMPORTANT)));
+        noteTagService.onNoteSaved(new NoteSavedEvent(note("2", null)));
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class)))
+                .thenThrow(new IllegalStateException("Database unavailable"))
+                .thenReturn(Stream.of(note("1", Tag.BUSINESS), note("2", Tag.BUSINESS)));
+
+        noteTagService.buildUntilDone();
+
+        assertTrue(noteTagService.isReady());
+        assertEquals(List.of("2"), noteTagIndex.find(TagExpression.parse("IMPORTANT"), 0, 10).ids());
+        assertEquals(List.of("1"), noteTagIndex.find(TagExpression.parse("BUSINESS"), 0, 10).ids());
+    }
+
+    @Test
+    void givenChangesLost_rebuild_ReplacesIndexedTags() {
+        ReflectionTestUtils.setField(noteTagService, "ready", true);
+        noteTagService.onNoteSaved(new NoteSavedEvent(note("1", Tag.BUSINESS)));
+        noteTagService.onNoteSaved(new NoteSavedEvent(note("2", Tag.BUSINESS)));
+        when(mongoTemplate.stream(any(Query.class), eq(Note.class)))
+                .thenReturn(Stream.of(note("1", Tag.PERSONAL), note("3", Tag.BUSINESS)));
+
+        noteTagService.rebuild();
+
+        assertTrue(noteTagService.isReady());
+        assertEquals(List.of("3"), noteTagIndex.find(TagExpression.parse("BUSINESS"), 0, 10).ids());
+        assertEquals(2, noteTagIndex.size());
+    }
+
+    @Test
+    void givenSaveWithoutTags_onNoteSaved_KeepsIndexedTags() {
+        ReflectionTestUtils.setField(noteTagService, "ready", true);
+        noteTagService.onNoteSaved(new NoteSavedEvent(note("1", Tag.BUSINESS)));
+        noteTagService.onNoteSaved(new NoteSavedEvent(note("1", null)));
+
+        assertEquals(Map.of("BUSINESS", 1L, "PERSONAL", 0L, "IMPORTANT", 0L), noteTagService.countByTag());
+    }
+
+    private static Note note(String id, Tag tag) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTags(tag == null ? null : Set.of(tag));
+        return note;
+    }
+}
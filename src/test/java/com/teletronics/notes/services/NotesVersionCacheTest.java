@@ -0,0 +1,53 @@
+package com.teletronics.notes.services;
+
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.events.NoteSavedEvent;
+import com.teletronics.notes.models.Note;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class NotesVersionCacheTest {
+
+    private final NotesVersionCache cache = cache(Duration.ofMinutes(1));
+
+    @Test
+    void givenPutVersion_get_ReturnsItUntilNoteSavedOrDeleted() {
+        cache.put(cache.generation(), "8-1930b7c6e00");
+        assertEquals("8-1930b7c6e00", cache.get());
+
+        cache.onNoteSaved(new NoteSavedEvent(new Note()));
+        assertNull(cache.get());
+
+        cache.put(cache.generation(), "9-1930b7c6e00");
+        cache.onNoteDeleted(new NoteDeletedEvent("1"));
+        assertNull(cache.get());
+    }
+
+    @Test
+    void givenNoteSavedWhileVersionRead_put_DoesNotKeepIt() {
+        long generation = cache.generation();
+        cache.onNoteSaved(new NoteSavedEvent(new Note(), true));
+        cache.put(generation, "8-1930b7c6e00");
+
+        assertNull(cache.get());
+    }
+
+    @Test
+    void givenZeroTtl_get_ReturnsNothing() {
+        NotesVersionCache uncached = cache(Duration.ZERO);
+        uncached.put(uncached.generation(), "8-1930b7c6e00");
+
+        assertNull(uncached.get());
+    }
+
+    private static NotesVersionCache cache(Duration ttl) {
+        NotesVersionCache cache = new NotesVersionCache();
+        ReflectionTestUtils.setField(cache, "ttl", ttl);
+        return cache;
+    }
+}
@@ -0,0 +1,83 @@
+package com.teletronics.notes.services;
+
+import com.teletronics.notes.events.NoteDeletedEvent;
+import com.teletronics.notes.exceptions.ResourceNotFoundException;
+import com.teletronics.notes.repositories.ReactiveNoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ReactiveNoteServiceTest {
+
+    @Mock
+    private ReactiveNoteRepository noteRepository;
+
+    @Spy
+    private NoteService noteService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ReactiveNoteService reactiveNoteService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void countWords_GivenBuffersSplittingWordsAndCharacters_MatchesTextCount() {
+        String text = "Note is just a note, ünïcödé nôte 42 x9";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+        // 3 byte buffers split words and multi byte characters
+        Flux<DataBuffer> buffers = Flux.range(0, (bytes.length + 2) / 3)
+                .map(i -> factory.wrap(Arrays.copyOfRange(bytes, i * 3, Math.min(bytes.length, i * 3 + 3))));
+
+        StepVerifier.create(reactiveNoteService.countWords(buffers))
+                .expectNext(noteService.findUniqueOccurrence(text))
+                .verifyComplete();
+    }
+
+    @Test
+    void givenDeletedNote_deleteById_PublishesEventOnBlockingPool() {
+        AtomicReference<String> publishingThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            publishingThread.set(Thread.currentThread().getName());
+            return null;
+        }).when(eventPublisher).publishEvent((Object) any());
+        when(noteRepository.removeById("1")).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(reactiveNoteService.deleteById("1"))
+                .verifyComplete();
+        verify(eventPublisher).publishEvent(new NoteDeletedEvent("1"));
+        assertTrue(publishingThread.get().startsWith("boundedElastic"), publishingThread.get());
+    }
+
+    @Test
+    void givenInvalidId_deleteById_EmitsResourceNotFoundException() {
+        when(noteRepository.removeById("1")).thenReturn(Mono.just(0L));
+
+        StepVerifier.create(reactiveNoteService.deleteById("1"))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+}
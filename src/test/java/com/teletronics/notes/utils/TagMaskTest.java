@@ -0,0 +1,27 @@
+package com.teletronics.notes.utils;
+
+import com.teletronics.notes.models.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TagMaskTest {
+
+    @Test
+    void givenNames_ofNames_ReturnsSharedSetsInOrdinalOrder() {
+        int mask = TagMask.ofNames(List.of("IMPORTANT", "BUSINESS", "IMPORTANT"));
+
+        assertEquals(Set.of(Tag.BUSINESS, Tag.IMPORTANT), TagMask.tags(mask));
+        assertEquals(List.of("BUSINESS", "IMPORTANT"), List.copyOf(TagMask.names(mask)));
+        assertSame(TagMask.names(mask), TagMask.names(TagMask.ofTags(Set.of(Tag.IMPORTANT, Tag.BUSINESS))));
+        assertThrows(UnsupportedOperationException.class, () -> TagMask.tags(mask).add(Tag.PERSONAL));
+    }
+
+    @Test
+    void givenUnknownName_ofNames_ThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> TagMask.ofNames(List.of("BUSINESS", "UNKNOWN")));
+    }
+}